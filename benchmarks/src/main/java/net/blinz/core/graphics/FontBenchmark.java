@@ -0,0 +1,89 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks measuring text with Font.getStringWidth, for Strings that are
+ * measured every frame and for Strings that are new each time.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FontBenchmark {
+
+    @Param({"8", "64"})
+    public int length;
+    private Font font;
+    private String repeated;
+    private final String[] fresh = new String[4096];
+    private int next = 0;
+
+    /**
+     * Loads a font and builds the Strings to measure.
+     * @throws FontNotFoundException if the Dialog font is missing
+     */
+    @Setup
+    public void setup() throws FontNotFoundException {
+        font = FontLoader.getFont("Dialog", 12);
+        final java.util.Random random = new java.util.Random(42);
+        final char[] chars = new char[length];
+        for (int i = 0; i < fresh.length; i++) {
+            for (int c = 0; c < length; c++) {
+                chars[c] = (char) (' ' + random.nextInt(95));
+            }
+            fresh[i] = new String(chars);
+        }
+        repeated = fresh[0];
+    }
+
+    /**
+     * Benchmarks measuring the same String over and over.
+     * @return the width, so it is not optimized away
+     */
+    @Benchmark
+    public long repeatedString() {
+        return font.getStringWidth(repeated);
+    }
+
+    /**
+     * Benchmarks measuring a different String each time, cycling through
+     * more Strings than are cached.
+     * @return the width, so it is not optimized away
+     */
+    @Benchmark
+    public long freshString() {
+        next = (next + 1) & (fresh.length - 1);
+        return font.getStringWidth(fresh[next]);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks ImageLoader.loadImage for images that are already loaded, with
+ * many ImageStubs in the cache.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageLoaderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int stubs;
+    private String[] paths;
+    private File directory;
+    private int next = 0;
+
+    /**
+     * Writes stubs small images to a temporary directory and loads each once.
+     * @throws IOException if the images cannot be written or read
+     */
+    @Setup
+    public void setup() throws IOException {
+        directory = File.createTempFile("blinz", "images");
+        directory.delete();
+        directory.mkdir();
+        final BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        paths = new String[stubs];
+        for (int i = 0; i < stubs; i++) {
+            final File file = new File(directory, i + ".png");
+            ImageIO.write(image, "png", file);
+            paths[i] = file.getPath();
+            ImageLoader.loadImage(paths[i]);
+        }
+    }
+
+    /**
+     * Deletes the images written.
+     */
+    @TearDown
+    public void tearDown() {
+        for (final String path : paths) {
+            new File(path).delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Benchmarks loading an image that is already loaded.
+     * @return the Image, so it is not optimized away
+     * @throws IOException never, as the image is cached
+     */
+    @Benchmark
+    public Image cachedLoad() throws IOException {
+        next = (next + 1) % stubs;
+        final Image image = ImageLoader.loadImage(paths[next]);
+        //release the reference now rather than leaving it to the finalizer
+        image.dumpImage();
+        return image;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import net.blinz.core.util.Client;
+import net.blinz.core.util.Clients;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the reference counting of ResourceStub, done every time an Image
+ * or Font is created or collected.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceStubBenchmark {
+
+    @Param({"1", "16"})
+    public int clients;
+    private ResourceStub stub;
+    private Client client;
+
+    /**
+     * Creates a stub with the given number of Clients, benchmarked against
+     * the last added.
+     */
+    @Setup
+    public void setup() {
+        stub = new ResourceStub() {
+        };
+        client = Clients.localProcess();
+        for (int i = 1; i < clients; i++) {
+            client = new Client();
+            stub.incrementClient(client);
+        }
+    }
+
+    /**
+     * Benchmarks taking and releasing a reference.
+     * @return the number of dependents, so it is not optimized away
+     */
+    @Benchmark
+    public int incrementDecrement() {
+        stub.incrementClient(client);
+        stub.decrementClient(client);
+        return stub.dependents();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks entering and leaving deeply nested viewports, drawing through
+ * the Java2D Surface so that no OpenGL is needed. Viewport.fixViewport, which
+ * this replaces, has given way to the viewport stack of Graphics.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewportBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int depth;
+    private SoftwareRenderer renderer;
+
+    /**
+     * Sets up a small Canvas that nests viewports depth deep a number of times.
+     */
+    @Setup
+    public void setup() {
+        renderer = new SoftwareRenderer(64, 64);
+        final Canvas canvas = new Canvas() {
+
+            @Override
+            protected void draw(final Graphics graphics) {
+                for (int n = 0; n < 16; n++) {
+                    for (int i = 0; i < depth; i++) {
+                        graphics.enterViewport(1, 1, 62 - i, 62 - i);
+                    }
+                    for (int i = 0; i < depth; i++) {
+                        graphics.exitViewport();
+                    }
+                }
+            }
+        };
+        canvas.setBounds(0, 0, 64, 64);
+        renderer.addCanvas(canvas);
+    }
+
+    /**
+     * Benchmarks a frame of 16 nestings.
+     * @return the frame, so it is not optimized away
+     */
+    @Benchmark
+    public Object nestedViewports() {
+        return renderer.render();
+    }
+}
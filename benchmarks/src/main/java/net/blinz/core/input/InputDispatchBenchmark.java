@@ -0,0 +1,125 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.input;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks dispatching AWT input events to Blinz listeners through
+ * InputListener.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputDispatchBenchmark {
+
+    @Param({"1", "16"})
+    public int listeners;
+    private final InputListener input = new InputListener();
+    private KeyEvent key;
+    private MouseEvent mouse;
+    /**
+     * Sum of what the listeners received.
+     */
+    private int received = 0;
+
+    /**
+     * Adds the listeners, each adding what it receives to received, and
+     * creates the events to dispatch.
+     */
+    @Setup
+    public void setup() {
+        for (int i = 0; i < listeners; i++) {
+            input.addKeyListener(new KeyListener() {
+
+                @Override
+                public void keyPressed(final int key) {
+                    received += key;
+                }
+
+                @Override
+                public void keyReleased(final int key) {
+                    received += key;
+                }
+
+                @Override
+                public void keyTyped(final int key) {
+                    received += key;
+                }
+            });
+            input.addMouseListener(new MouseListener() {
+
+                @Override
+                public void buttonClick(final int buttonNumber, final int clickCount, final int cursorX, final int cursorY) {
+                    received += cursorX;
+                }
+
+                @Override
+                public void buttonPress(final int buttonNumber, final int cursorX, final int cursorY) {
+                    received += cursorX;
+                }
+
+                @Override
+                public void buttonRelease(final int buttonNumber, final int cursorX, final int cursorY) {
+                    received += cursorX;
+                }
+            });
+        }
+        final java.awt.Canvas source = new java.awt.Canvas();
+        key = new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, 0, KeyEvent.VK_A, 'a');
+        mouse = new MouseEvent(source, MouseEvent.MOUSE_PRESSED, 0, 0, 10, 10, 1, false, MouseEvent.BUTTON1);
+    }
+
+    /**
+     * Benchmarks dispatching a key press and release.
+     * @return what the listeners received, so it is not optimized away
+     */
+    @Benchmark
+    public int keyPressRelease() {
+        input.keyPressed(key);
+        input.keyReleased(key);
+        return received;
+    }
+
+    /**
+     * Benchmarks dispatching a mouse button press and release.
+     * @return what the listeners received, so it is not optimized away
+     */
+    @Benchmark
+    public int mousePressRelease() {
+        input.mousePressed(mouse);
+        input.mouseReleased(mouse);
+        return received;
+    }
+}
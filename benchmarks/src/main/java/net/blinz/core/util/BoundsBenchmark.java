@@ -0,0 +1,100 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the intersection and containment tests of Bounds, as run for
+ * every primitive culled.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundsBenchmark {
+
+    private final Bounds bounds = new Bounds(100, 100, 400, 300);
+    /**
+     * Rectangles and points to test, half inside bounds and half outside.
+     */
+    private final int[] tests = new int[1024 * 4];
+    private int next = 0;
+
+    /**
+     * Fills the tests with a fixed pseudo-random sequence.
+     */
+    @Setup
+    public void setup() {
+        final java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < tests.length; i++) {
+            tests[i] = random.nextInt(800);
+        }
+    }
+
+    /**
+     * Benchmarks Bounds.intersects(x, y, width, height).
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean intersects() {
+        final int i = next();
+        return bounds.intersects(tests[i], tests[i + 1], tests[i + 2] / 4, tests[i + 3] / 4);
+    }
+
+    /**
+     * Benchmarks the static Bounds.intersects of two rectangles.
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean intersectsStatic() {
+        final int i = next();
+        return Bounds.intersects(100, 100, 400, 300, tests[i], tests[i + 1], tests[i + 2] / 4, tests[i + 3] / 4);
+    }
+
+    /**
+     * Benchmarks Bounds.contains(x, y).
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean contains() {
+        final int i = next();
+        return bounds.contains(tests[i], tests[i + 1]);
+    }
+
+    /**
+     * Gets the index of the next test.
+     * @return the index of the next test
+     */
+    private int next() {
+        next = (next + 4) & (tests.length - 1);
+        return next;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks evaluating AndTriggers and OrTriggers over the worst case, where
+ * every sub-Trigger has to be evaluated.
+ * @author Blinz Project
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriggerBenchmark {
+
+    /**
+     * A Trigger with a fixed value.
+     */
+    private static final class ConstantTrigger extends Trigger {
+
+        private final boolean value;
+
+        /**
+         * Constructor
+         * @param value the value this Trigger evaluates to
+         */
+        ConstantTrigger(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        protected final boolean evaluate() {
+            return value;
+        }
+    }
+    @Param({"2", "8", "64"})
+    public int triggers;
+    private final AndTrigger and = new AndTrigger();
+    private final OrTrigger or = new OrTrigger();
+
+    /**
+     * Builds an AndTrigger of true Triggers and an OrTrigger of false ones.
+     */
+    @Setup
+    public void setup() {
+        for (int i = 0; i < triggers; i++) {
+            and.addTrigger(new ConstantTrigger(true));
+            or.addTrigger(new ConstantTrigger(false));
+        }
+    }
+
+    /**
+     * Benchmarks an AndTrigger whose sub-Triggers are all true.
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean andTrigger() {
+        return and.condition();
+    }
+
+    /**
+     * Benchmarks an OrTrigger whose sub-Triggers are all false.
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean orTrigger() {
+        return or.condition();
+    }
+}
@@ -18,40 +18,114 @@ package net.blinz.core.graphics;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.blinz.core.util.Bounds;
 
 /**
  * A container class for Images that automatically flips after a set interval
- * of time.
+ * of time. The current Image is worked out from the frame clock, which is
+ * sampled once per frame, so all Animations drawn in a frame advance together.
+ *
+ * An Animation can also be cut from a single sprite sheet Image, its frames
+ * then all come from one texture and draw without switching textures.
  *
  * @author Blinz Project
  */
 public class Animation {
 
-    private long milliSecondsPerImage = 10;
-    private long lastUpdateTime = 0;
-    private int slide = 0;
-    private final LinkedList<Image> toAdd = new LinkedList<Image>();
-    private final LinkedList<Image> toRemove = new LinkedList<Image>();
-    private final ArrayList<Image> images = new ArrayList<Image>();
-    
+    private static final Frame[] EMPTY = new Frame[0];
+    private volatile long milliSecondsPerImage = 10;
+    /**
+     * Frame clock time at which the first frame was shown, -1 until drawn.
+     */
+    private volatile long start = -1;
+    /**
+     * The frames in order, replaced rather than changed so that drawing needs
+     * no lock.
+     */
+    private volatile Frame[] frames = EMPTY;
+
     /**
      * Constructor
      */
     public Animation() {
     }
 
+    /**
+     * Creates an Animation of the cells of a sprite sheet, read left to right
+     * then top to bottom. Cells that do not fit whole in the sheet are left out.
+     * @param sheet the sprite sheet
+     * @param frameWidth the width of each cell
+     * @param frameHeight the height of each cell
+     */
+    public Animation(final Image sheet, final int frameWidth, final int frameHeight) {
+        if (frameWidth <= 0 || frameHeight <= 0) {
+            throw new IllegalArgumentException("frameWidth and frameHeight must be positive");
+        }
+        final int columns = sheet.getWidth() / frameWidth;
+        final int rows = sheet.getHeight() / frameHeight;
+        final Frame[] retval = new Frame[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int x = column * frameWidth;
+                final int y = row * frameHeight;
+                retval[row * columns + column] = new Frame(sheet, x, y, x + frameWidth, y + frameHeight);
+            }
+        }
+        frames = retval;
+    }
+
+    /**
+     * Creates an Animation of the given areas of a sprite sheet, shown in the
+     * order given.
+     * @param sheet the sprite sheet
+     * @param frames the area of each frame in the sheet, in pixels
+     */
+    public Animation(final Image sheet, final Bounds... frames) {
+        final Frame[] retval = new Frame[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            final Bounds b = frames[i];
+            retval[i] = new Frame(sheet, b.x, b.y, b.x2(), b.y2());
+        }
+        this.frames = retval;
+    }
+
+    /**
+     * Creates an Animation of the cells of the sprite sheet at the given path,
+     * read left to right then top to bottom.
+     * @param sheetPath the path to the sprite sheet
+     * @param frameWidth the width of each cell
+     * @param frameHeight the height of each cell
+     * @throws IOException
+     */
+    public Animation(final String sheetPath, final int frameWidth, final int frameHeight) throws IOException {
+        this(ImageLoader.loadImage(sheetPath), frameWidth, frameHeight);
+    }
+
     /**
      * Adds the image associated with the path provided.
      * @param imagePath the path to the image
      * @throws FileNotFoundException
      */
     public final void addImage(final String imagePath) throws IOException {
-        Image image = ImageLoader.loadImage(imagePath);
-        toAdd.add(image);
+        addImage(ImageLoader.loadImage(imagePath));
+    }
+
+    /**
+     * Adds the images associated with the paths provided, in order. The
+     * images are decoded in parallel.
+     * @param imagePaths the paths to the images
+     * @throws IOException
+     */
+    public final void addImages(final String... imagePaths) throws IOException {
+        final List<Future<Image>> images = ImageLoader.loadImagesAsync(imagePaths);
+        for (int i = 0; i < images.size(); i++) {
+            addImage(ImageLoader.get(images.get(i)));
+        }
     }
 
     /**
@@ -60,27 +134,55 @@ public class Animation {
      * @throws FileNotFoundException
      */
     public final void addImage(final Image image) {
-        toAdd.add(image);
+        addFrame(new Frame(image, 0, 0, image.getWidth(), image.getHeight()));
+    }
+
+    /**
+     * Adds the given area of the given Image to this Animation as a frame.
+     * @param image the Image holding the frame, such as a sprite sheet
+     * @param frame the area of the frame in the Image, in pixels
+     */
+    public final void addImage(final Image image, final Bounds frame) {
+        addFrame(new Frame(image, frame.x, frame.y, frame.x2(), frame.y2()));
     }
 
     /**
      * Removes the image associated with the path provided.
      * @param imagePath the path to the image
      */
-    public final void removeImage(final String imagePath) {
-        for (int i = 0; i < images.size(); i++) {
-            if (images.get(i).getImageStub().getPath().equals(imagePath)) {
-                images.remove(i);
+    public final synchronized void removeImage(final String imagePath) {
+        final Frame[] retval = new Frame[frames.length];
+        int size = 0;
+        for (int i = 0; i < frames.length; i++) {
+            if (!frames[i].image.getImageStub().getPath().equals(imagePath)) {
+                retval[size++] = frames[i];
             }
         }
+        frames = Arrays.copyOf(retval, size);
     }
 
     /**
      * Removes the specified Image object from this Animation.
      * @param image a reference to the Image object to add
      */
-    public final void removeImage(final Image image) {
-        toRemove.add(image);
+    public final synchronized void removeImage(final Image image) {
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i].image == image) {
+                final Frame[] retval = new Frame[frames.length - 1];
+                System.arraycopy(frames, 0, retval, 0, i);
+                System.arraycopy(frames, i + 1, retval, i, retval.length - i);
+                frames = retval;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of frames in this Animation.
+     * @return the number of frames in this Animation
+     */
+    public final int getFrameCount() {
+        return frames.length;
     }
 
     /**
@@ -88,39 +190,26 @@ public class Animation {
      * to the next image.
      * @param milli time to elapse between fliping to a different slide
      */
-    public final void milliSecondsPerImage(final int milli) {
+    public final synchronized void milliSecondsPerImage(final int milli) {
+        final long now = FrameClock.now();
+        //keep showing the current slide
+        if (start != -1) {
+            start = now - (now - start) / milliSecondsPerImage * milli;
+        }
         this.milliSecondsPerImage = milli;
     }
 
     /**
-     * Returns the current Image in this Animation.
+     * Returns the current frame of this Animation.
      * Note: Returns null if this Animation is empty.
-     * @return the current Image in this Animation
+     * @return the current frame of this Animation
      */
-    final Image getImage() {
-        manageImages();
-        if (images.isEmpty()) {
+    final Frame getFrame() {
+        final Frame[] frames = this.frames;
+        if (frames.length == 0) {
             return null;
         }
-        return images.get(getSlide());
-    }
-
-    /**
-     * Adds and removes Images according to what is in the toAdd and toRemove lists
-     * respectively.
-     */
-    final void manageImages() {
-        while (!toAdd.isEmpty()) {
-            images.add(toAdd.get(0));
-            toAdd.remove(0);
-        }
-
-        while (!toRemove.isEmpty()) {
-            if (!images.remove(toRemove.get(0))) {
-                toAdd.remove(toRemove.get(0));
-            }
-            toRemove.remove(0);
-        }
+        return frames[getSlide(frames.length)];
     }
 
     @Override
@@ -133,16 +222,55 @@ public class Animation {
     }
 
     /**
-     * Returns the current slide index, updating it if necessary.
+     * Appends a frame.
+     * @param frame the frame to append
+     */
+    private synchronized void addFrame(final Frame frame) {
+        final Frame[] retval = Arrays.copyOf(frames, frames.length + 1);
+        retval[frames.length] = frame;
+        frames = retval;
+    }
+
+    /**
+     * Returns the current slide index at the frame clock's time.
+     * @param slides the number of slides
      * @return the current slide index.
      */
-    private final synchronized int getSlide() {
-        if (System.currentTimeMillis() - lastUpdateTime >= milliSecondsPerImage) {
-            final int slides = images.size();
-            slide += (System.currentTimeMillis() - lastUpdateTime) / milliSecondsPerImage;
-            slide -= (slide / slides) * slides;
-            lastUpdateTime = System.currentTimeMillis();
+    private int getSlide(final int slides) {
+        final long now = FrameClock.now();
+        long start = this.start;
+        if (start == -1) {
+            start = now;
+            this.start = now;
+        }
+        return (int) ((now - start) / milliSecondsPerImage % slides);
+    }
+
+    /**
+     * An area of an Image shown as one frame of an Animation.
+     */
+    static final class Frame {
+
+        final Image image;
+        /**
+         * Corners of the frame in the Image, in pixels.
+         */
+        final int x1, y1, x2, y2;
+
+        /**
+         * Constructor
+         * @param image the Image holding the frame
+         * @param x1 the x coordinate of the top left corner
+         * @param y1 the y coordinate of the top left corner
+         * @param x2 the x coordinate of the bottom right corner
+         * @param y2 the y coordinate of the bottom right corner
+         */
+        Frame(final Image image, final int x1, final int y1, final int x2, final int y2) {
+            this.image = image;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
         }
-        return slide;
     }
 }
@@ -17,7 +17,6 @@
 package net.blinz.core.graphics;
 
 import java.util.Vector;
-import javax.media.opengl.GLAutoDrawable;
 import net.blinz.core.util.Bounds;
 import net.blinz.core.input.KeyListener;
 import net.blinz.core.input.MouseListener;
@@ -26,6 +25,9 @@ import net.blinz.core.input.MouseWheelListener;
 /**
  * Canvas class is necessary to draw to the Display. Canvas class allows dividing
  * the display into section such as top right or bottom left.
+ *
+ * A Canvas may be added to the Display and to OffscreenRenderers or
+ * SoftwareRenderers at once, it is then drawn by one of them at a time.
  * @author Blinz Project
  */
 public abstract class Canvas {
@@ -91,6 +93,75 @@ public abstract class Canvas {
     final InputListener inputListener = new InputListener();
     private final Bounds bounds = new Bounds();
     private final Graphics graphics = new Graphics();
+    /**
+     * Held while drawing, as graphics and the layer are used by one drawer at
+     * a time.
+     */
+    private final Object drawLock = new Object();
+    /**
+     * Area invalidated since this Canvas was last drawn, relative to its top
+     * left corner. Only used when the Display redraws partially.
+     */
+    private final Bounds dirty = new Bounds();
+    private boolean isDirty = false;
+    private final TimingHistogram drawTimes = new TimingHistogram();
+    private final GLCallStats callStats = new GLCallStats();
+    /**
+     * Whether this Canvas is drawn into a layer and redrawn from it until invalidated.
+     */
+    private volatile boolean cached = false;
+    /**
+     * Whether the layer must be redrawn, guarded by dirty.
+     */
+    private boolean layerStale = true;
+    private CanvasLayer layer;
+    /**
+     * Bounds of the layer when drawing into it.
+     */
+    private final Bounds layerBounds = new Bounds();
+
+    /**
+     * Gets the distribution of the time taken to draw this Canvas, measured
+     * on the CPU from the start of draw(Graphics) until its batched
+     * primitives and text have been sent to OpenGL.
+     * @return the draw times of this Canvas
+     */
+    public final TimingHistogram getDrawTimes() {
+        return drawTimes;
+    }
+
+    /**
+     * Gets the counts of OpenGL calls made drawing this Canvas, kept while
+     * Display.setGLCallCounting(true) is in effect.
+     * @return the GLCallStats of this Canvas
+     */
+    public final GLCallStats getGLCallStats() {
+        return callStats;
+    }
+
+    /**
+     * Sets whether this Canvas is cached in a layer. A cached Canvas is drawn
+     * into a texture of its size, which is then drawn in its place every frame
+     * until invalidate() is called or it is resized. This suits Canvases that
+     * rarely change, which must call invalidate() when they do.
+     *
+     * Caching needs framebuffer object support and glBlendFuncSeparate,
+     * without them the Canvas is drawn normally.
+     * @param cached true to cache this Canvas in a layer, false to draw it every frame
+     */
+    public final void setCached(final boolean cached) {
+        this.cached = cached;
+        invalidate();
+        Display.invalidate();
+    }
+
+    /**
+     * Indicates whether this Canvas is cached in a layer.
+     * @return true if this Canvas is cached in a layer, false otherwise
+     */
+    public final boolean isCached() {
+        return cached;
+    }
 
     /**
      * Gets the width of this Canvas.
@@ -214,6 +285,7 @@ public abstract class Canvas {
      */
     public final void setBounds(final int x, final int y, final int width, final int height) {
         bounds.setBounds(x, y, width, height);
+        Display.invalidate();
     }
 
     /**
@@ -223,6 +295,7 @@ public abstract class Canvas {
      */
     public final void setPosition(final int x, final int y) {
 	bounds.setPosition(x, y);
+	Display.invalidate();
     }
 
     /**
@@ -231,6 +304,7 @@ public abstract class Canvas {
      */
     public final void setX(final int x) {
 	bounds.x = x;
+	Display.invalidate();
     }
 
     /**
@@ -239,6 +313,7 @@ public abstract class Canvas {
      */
     public final void setY(final int y) {
 	bounds.y = y;
+	Display.invalidate();
     }
 
     /**
@@ -249,6 +324,7 @@ public abstract class Canvas {
     public final void setSize(final int width, final int height) {
         bounds.setSize(width, height);
         graphics.setContextBounds(bounds);
+        Display.invalidate();
     }
 
     /**
@@ -258,6 +334,7 @@ public abstract class Canvas {
     public final void setWidth(final int width) {
         bounds.setWidth(width);
         graphics.setContextBounds(bounds);
+        Display.invalidate();
     }
 
     /**
@@ -267,17 +344,161 @@ public abstract class Canvas {
     public final void setHeight(final int height) {
         bounds.setHeight(height);
         graphics.setContextBounds(bounds);
+        Display.invalidate();
+    }
+
+    /**
+     * Marks this whole Canvas as needing to be redrawn.
+     *
+     * When the Display is set to redraw partially a Canvas is only drawn where
+     * it has been invalidated, a Canvas that changes must invalidate the areas
+     * that changed. Otherwise this has no effect.
+     */
+    public final void invalidate() {
+        invalidate(0, 0, bounds.getWidth(), bounds.getHeight());
+    }
+
+    /**
+     * Marks the given area of this Canvas as needing to be redrawn.
+     *
+     * When the Display is set to redraw partially a Canvas is only drawn where
+     * it has been invalidated, a Canvas that changes must invalidate the areas
+     * that changed. Otherwise this has no effect.
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    public final void invalidate(final int x, final int y, final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        synchronized (dirty) {
+            layerStale = true;
+            if (!isDirty) {
+                dirty.setBounds(x, y, width, height);
+                isDirty = true;
+                return;
+            }
+            final int x2 = Math.max(dirty.x2(), x + width);
+            final int y2 = Math.max(dirty.y2(), y + height);
+            dirty.setPosition(Math.min(dirty.x, x), Math.min(dirty.y, y));
+            dirty.setSize(x2 - dirty.x, y2 - dirty.y);
+        }
+    }
+
+    /**
+     * Gets and clears the area invalidated since the last call.
+     * @param region receives the invalidated area, relative to the top left corner of this Canvas
+     * @return true if any area was invalidated, false otherwise
+     */
+    final boolean takeDirty(final Bounds region) {
+        synchronized (dirty) {
+            if (!isDirty) {
+                return false;
+            }
+            region.setBounds(dirty);
+            isDirty = false;
+            return true;
+        }
+    }
+
+    /**
+     * Gets the bounds of this Canvas in the window, the y coordinate being
+     * that of its lower edge measured from the bottom of the window.
+     * @return the bounds of this Canvas
+     */
+    final Bounds getBounds() {
+        return bounds;
     }
 
     /**
      * Draw this Canvas.
-     * @param gl context for this Canvas.
+     * @param state the GLState of the context to draw this Canvas in
+     * @param region the area to redraw relative to the top left corner of this
+     * Canvas, or null to draw all of it
      */
-    final void draw(final GLAutoDrawable gl) {
-        graphics.setContext(gl);
-        graphics.setContextBounds(bounds);
+    final void draw(final GLState state, final Bounds region) {
+        synchronized (drawLock) {
+            final GLCounter counter = state.counter;
+            if (counter != null) {
+                callStats.mark(counter.counts);
+            }
+            if (cached || layer != null) {
+                drawLayer(state, region);
+            } else {
+                graphics.setContext(state);
+                render(bounds, region);
+            }
+            if (counter != null) {
+                callStats.record(counter.counts);
+            }
+        }
+    }
+
+    /**
+     * Draw this Canvas on the given Surface.
+     * @param surface the Surface to draw this Canvas on
+     */
+    final void draw(final Surface surface) {
+        synchronized (drawLock) {
+            graphics.setSurface(surface);
+            render(bounds, null);
+        }
+    }
+
+    /**
+     * Draws this Canvas from its layer, redrawing the layer first if it is
+     * stale.
+     * @param state the GLState of the context to draw this Canvas in
+     * @param region the area to redraw relative to the top left corner of this
+     * Canvas, or null to draw all of it
+     */
+    private void drawLayer(final GLState state, final Bounds region) {
+        graphics.setContext(state);
+        if (!cached) {
+            layer.delete(state);
+            layer = null;
+            render(bounds, region);
+            return;
+        }
+        if (layer == null) {
+            layer = new CanvasLayer();
+        }
+        final int width = bounds.getWidth();
+        final int height = bounds.getHeight();
+        final boolean stale;
+        synchronized (dirty) {
+            stale = layerStale;
+            layerStale = false;
+        }
+        if (stale || !layer.holds(width, height)) {
+            if (!layer.begin(state, width, height)) {
+                render(bounds, region);
+                return;
+            }
+            layerBounds.setBounds(0, 0, width, height);
+            render(layerBounds, null);
+            layer.end(state);
+        }
+        layer.draw(state, bounds, region);
+    }
+
+    /**
+     * Draws this Canvas with its Graphics, which must already have been given
+     * its context.
+     * @param context the bounds to draw in, as kept by Canvas
+     * @param region the area to redraw relative to the top left corner of this
+     * Canvas, or null to draw all of it
+     */
+    private void render(final Bounds context, final Bounds region) {
+        final long start = System.nanoTime();
+        graphics.setContextBounds(context);
+        graphics.setRegion(region);
         graphics.load();
         draw(graphics);
+        graphics.flushText();
+        drawTimes.record(System.nanoTime() - start);
     }
 
     /**
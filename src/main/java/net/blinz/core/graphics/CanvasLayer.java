@@ -0,0 +1,213 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+import net.blinz.core.util.Bounds;
+
+/**
+ * A texture a Canvas is drawn into through a framebuffer object, so that it
+ * can be redrawn as a single quad until it changes.
+ * @author Blinz Project
+ */
+final class CanvasLayer {
+
+    private int texture = 0;
+    private int fbo = 0;
+    private int width, height;
+    private int textureWidth, textureHeight;
+    /**
+     * The context in which the texture and framebuffer were created.
+     */
+    private GLContext context;
+    /**
+     * A context in which a complete framebuffer could not be made.
+     */
+    private GLContext failed;
+    /**
+     * The clear color to restore after clearing the layer.
+     */
+    private final float[] clearColor = new float[4];
+
+    /**
+     * Indicates whether the layer holds a drawing of the given size made in
+     * the current context or one sharing with it.
+     * @param width the width of the Canvas
+     * @param height the height of the Canvas
+     * @return true if the layer can be drawn as it is
+     */
+    final boolean holds(final int width, final int height) {
+        return fbo != 0 && ContextGroups.shared(context, GLContext.getCurrent())
+                && width == this.width && height == this.height;
+    }
+
+    /**
+     * Directs drawing into the layer, creating it at the given size if it does
+     * not exist at that size in the current context or one sharing with it,
+     * and clears it.
+     * @param state the GLState of the current context
+     * @param width the width of the Canvas
+     * @param height the height of the Canvas
+     * @return true if drawing now goes to the layer, false if framebuffer
+     * objects or separate alpha blending are not supported
+     */
+    final boolean begin(final GLState state, final int width, final int height) {
+        final GL gl = state.gl;
+        if (failed == GLContext.getCurrent() || width <= 0 || height <= 0
+                || !gl.isExtensionAvailable("GL_EXT_framebuffer_object")
+                || !gl.isFunctionAvailable("glBlendFuncSeparate")) {
+            return false;
+        }
+        if (fbo == 0 || !ContextGroups.shared(context, GLContext.getCurrent())
+                || width != this.width || height != this.height) {
+            if (!create(state, width, height)) {
+                return false;
+            }
+        } else {
+            gl.glBindFramebufferEXT(GL.GL_FRAMEBUFFER_EXT, fbo);
+        }
+        state.disable(GL.GL_SCISSOR_TEST);
+        gl.glGetFloatv(GL.GL_COLOR_CLEAR_VALUE, clearColor, 0);
+        gl.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+        gl.glClearColor(clearColor[0], clearColor[1], clearColor[2], clearColor[3]);
+        state.layerBlending(true);
+        return true;
+    }
+
+    /**
+     * Directs drawing back to the window.
+     * @param state the GLState of the current context
+     */
+    final void end(final GLState state) {
+        state.layerBlending(false);
+        state.gl.glBindFramebufferEXT(GL.GL_FRAMEBUFFER_EXT, 0);
+    }
+
+    /**
+     * Draws the layer over the Canvas's area of the window.
+     * @param state the GLState of the current context
+     * @param bounds the bounds of the Canvas, as kept by Canvas
+     * @param region the area to redraw relative to the top left corner of the
+     * Canvas, or null to draw all of it
+     */
+    final void draw(final GLState state, final Bounds bounds, final Bounds region) {
+        final GL gl = state.gl;
+        if (region != null) {
+            state.enable(GL.GL_SCISSOR_TEST);
+            state.scissor(bounds.x + region.x, bounds.y + bounds.height - region.y - region.height,
+                    region.width, region.height);
+        } else {
+            state.disable(GL.GL_SCISSOR_TEST);
+        }
+        //drawing into the cleared layer left its colors multiplied by their alpha
+        state.enable(GL.GL_BLEND);
+        state.blendFunc(GL.GL_ONE, GL.GL_ONE_MINUS_SRC_ALPHA);
+        state.disable(GL.GL_ALPHA_TEST);
+        state.enable(GL.GL_TEXTURE_2D);
+        state.texEnvMode(GL.GL_REPLACE);
+        state.bindTexture(texture);
+        state.viewport(bounds.x, bounds.y, width, height);
+        state.ortho(width, height);
+        final float right = (float) width / textureWidth;
+        final float top = (float) height / textureHeight;
+        gl.glBegin(GL.GL_QUADS);
+        gl.glTexCoord2f(0, top);
+        gl.glVertex2i(0, 0);
+        gl.glTexCoord2f(right, top);
+        gl.glVertex2i(width, 0);
+        gl.glTexCoord2f(right, 0);
+        gl.glVertex2i(width, height);
+        gl.glTexCoord2f(0, 0);
+        gl.glVertex2i(0, height);
+        gl.glEnd();
+    }
+
+    /**
+     * Deletes the layer's texture and framebuffer if they belong to the
+     * current context or one sharing with it. Otherwise the texture is left to
+     * be deleted when its own context next draws, the framebuffer holds no
+     * storage of its own.
+     * @param state the GLState of the current context
+     */
+    final void delete(final GLState state) {
+        if (fbo != 0) {
+            if (ContextGroups.shared(context, GLContext.getCurrent())) {
+                state.gl.glDeleteFramebuffersEXT(1, new int[]{fbo}, 0);
+                state.gl.glDeleteTextures(1, new int[]{texture}, 0);
+                state.forgetTexture();
+            } else {
+                ImageLoader.disposeLater(context, texture);
+            }
+        }
+        fbo = 0;
+        texture = 0;
+        context = null;
+    }
+
+    /**
+     * Creates a texture and framebuffer of the given size and binds the
+     * framebuffer, replacing the old ones.
+     * @param state the GLState of the current context
+     * @param width the width of the Canvas
+     * @param height the height of the Canvas
+     * @return true if the framebuffer is complete and bound, false otherwise
+     */
+    private boolean create(final GLState state, final int width, final int height) {
+        final GL gl = state.gl;
+        delete(state);
+        context = GLContext.getCurrent();
+        this.width = width;
+        this.height = height;
+        textureWidth = powerOfTwo(width);
+        textureHeight = powerOfTwo(height);
+        final int[] name = new int[1];
+        gl.glGenTextures(1, name, 0);
+        texture = name[0];
+        state.bindTexture(texture);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA8, textureWidth, textureHeight, 0,
+                GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, null);
+        gl.glGenFramebuffersEXT(1, name, 0);
+        fbo = name[0];
+        gl.glBindFramebufferEXT(GL.GL_FRAMEBUFFER_EXT, fbo);
+        gl.glFramebufferTexture2DEXT(GL.GL_FRAMEBUFFER_EXT, GL.GL_COLOR_ATTACHMENT0_EXT,
+                GL.GL_TEXTURE_2D, texture, 0);
+        if (gl.glCheckFramebufferStatusEXT(GL.GL_FRAMEBUFFER_EXT) != GL.GL_FRAMEBUFFER_COMPLETE_EXT) {
+            gl.glBindFramebufferEXT(GL.GL_FRAMEBUFFER_EXT, 0);
+            delete(state);
+            failed = GLContext.getCurrent();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the smallest power of two no less than the given number.
+     * @param n the number to round up
+     * @return the smallest power of two no less than n
+     */
+    private static int powerOfTwo(final int n) {
+        int retval = 1;
+        while (retval < n) {
+            retval <<= 1;
+        }
+        return retval;
+    }
+}
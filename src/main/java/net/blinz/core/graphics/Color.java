@@ -17,23 +17,27 @@
 package net.blinz.core.graphics;
 
 /**
- * Color class used to represent various colors using RGB values.
+ * Color class used to represent various colors using RGBA values. Each value
+ * is given on a scale of 0 to 127 and kept as 8 bits of a packed RGBA int, the
+ * form in which colors are handed to OpenGL.
  * @author Blinz Project
  */
 public final class Color {
 
-    byte red = 0;
-    byte green = 0;
-    byte blue = 0;
+    /**
+     * Red, green, blue and alpha from the most to the least significant byte,
+     * each on a scale of 0 to 255.
+     */
+    int rgba = 0x000000ff;
 
     /**
-     * Creates a Color object, defaults to black.
+     * Creates a Color object, defaults to opaque black.
      */
     public Color() {
     }
 
     /**
-     * Creates a Color object based on the values provided.
+     * Creates an opaque Color object based on the values provided.
      * @param red the red value in the RGB
      * @param green the red value in the RGB
      * @param blue the red value in the RGB
@@ -43,15 +47,35 @@ public final class Color {
     }
 
     /**
-     * Sets the Color to the mix of the provided RGB values.
+     * Creates a Color object based on the values provided.
+     * @param red the red value in the RGBA
+     * @param green the green value in the RGBA
+     * @param blue the blue value in the RGBA
+     * @param alpha the alpha value in the RGBA, 0 being transparent and 127 opaque
+     */
+    public Color(final int red, final int green, final int blue, final int alpha) {
+        setColor(red, green, blue, alpha);
+    }
+
+    /**
+     * Sets the Color to the opaque mix of the provided RGB values.
      * @param red the red value in the RGB
      * @param green the green value in the RGB
      * @param blue the blue value in the RGB
      */
     public final void setColor(final int red, final int green, final int blue) {
-        setRed(red);
-        setGreen(green);
-        setBlue(blue);
+        setColor(red, green, blue, 127);
+    }
+
+    /**
+     * Sets the Color to the mix of the provided RGBA values.
+     * @param red the red value in the RGBA
+     * @param green the green value in the RGBA
+     * @param blue the blue value in the RGBA
+     * @param alpha the alpha value in the RGBA, 0 being transparent and 127 opaque
+     */
+    public final void setColor(final int red, final int green, final int blue, final int alpha) {
+        rgba = (widen(red) << 24) | (widen(green) << 16) | (widen(blue) << 8) | widen(alpha);
     }
 
     /**
@@ -59,56 +83,64 @@ public final class Color {
      * @param color a Color object representing the color for this Color objec to take
      */
     public final void setColor(final Color color) {
-        setColor(color.red, color.green, color.blue);
+        rgba = color.rgba;
     }
 
     /**
      * Sets the red value of the RGB values in this Color object to the given value.
      * @param red red value in this Color's RGB
      */
-    public final void setRed(int red) {
-        if (red > 127) {
-            red = 127;
-        }
-        this.red = (byte) red;
+    public final void setRed(final int red) {
+        rgba = (rgba & 0x00ffffff) | (widen(red) << 24);
     }
 
     /**
      * Sets the green value of the RGB values in this Color object to the given value.
      * @param green green value in this Color's RGB
      */
-    public final void setGreen(int green) {
-        if (green > 127) {
-            green = 127;
-        }
-        this.green = (byte) green;
+    public final void setGreen(final int green) {
+        rgba = (rgba & 0xff00ffff) | (widen(green) << 16);
     }
 
     /**
      * Sets the blue value of the RGB values in this Color object to the given value.
      * @param blue blue value in this Color's RGB
      */
-    public final void setBlue(int blue) {
-        if (blue > 127) {
-            blue = 127;
-        }
-        this.blue = (byte) blue;
+    public final void setBlue(final int blue) {
+        rgba = (rgba & 0xffff00ff) | (widen(blue) << 8);
     }
 
     /**
-     * Gets the blue value in this Color's RGB.
+     * Sets the alpha value of this Color to the given value.
+     * @param alpha alpha value in this Color's RGBA, 0 being transparent and 127 opaque
+     */
+    public final void setAlpha(final int alpha) {
+        rgba = (rgba & 0xffffff00) | widen(alpha);
+    }
+
+    /**
+     * Sets this Color from a packed int holding red, green, blue and alpha
+     * from the most to the least significant byte, each on a scale of 0 to 255.
+     * @param rgba the packed RGBA value
+     */
+    public final void setRGBA(final int rgba) {
+        this.rgba = rgba;
+    }
+
+    /**
+     * Gets the red value in this Color's RGB.
      * @return the red value in this Color's RGB
      */
     public final byte getRed() {
-        return red;
+        return (byte) (rgba >>> 25);
     }
 
     /**
-     * Gets the blue value in this Color's RGB.
-     * @return the blue value in this Color's RGB
+     * Gets the green value in this Color's RGB.
+     * @return the green value in this Color's RGB
      */
     public final byte getGreen() {
-        return green;
+        return (byte) ((rgba >>> 17) & 0x7f);
     }
 
     /**
@@ -116,7 +148,24 @@ public final class Color {
      * @return the blue value in this Color's RGB
      */
     public final byte getBlue() {
-        return blue;
+        return (byte) ((rgba >>> 9) & 0x7f);
+    }
+
+    /**
+     * Gets the alpha value in this Color's RGBA.
+     * @return the alpha value in this Color's RGBA, 0 being transparent and 127 opaque
+     */
+    public final byte getAlpha() {
+        return (byte) ((rgba >>> 1) & 0x7f);
+    }
+
+    /**
+     * Gets this Color as a packed int holding red, green, blue and alpha from
+     * the most to the least significant byte, each on a scale of 0 to 255.
+     * @return the packed RGBA value
+     */
+    public final int getRGBA() {
+        return rgba;
     }
 
     /**
@@ -124,7 +173,7 @@ public final class Color {
      * @return a float representing the red value in a scale of  0 to 1.
      */
     float getRedf() {
-        return (float) ((red * 100 / 128) * .01);
+        return (rgba >>> 24) * (1f / 255);
     }
 
     /**
@@ -132,7 +181,7 @@ public final class Color {
      * @return a float representing the green value in a scale of  0 to 1.
      */
     float getGreenf() {
-        return (float) ((green * 100 / 128) * .01);
+        return ((rgba >>> 16) & 0xff) * (1f / 255);
     }
 
     /**
@@ -140,6 +189,29 @@ public final class Color {
      * @return a float representing the blue value in a scale of 0 to 1.
      */
     float getBluef() {
-        return (float) ((blue * 100 / 128) * .01);
+        return ((rgba >>> 8) & 0xff) * (1f / 255);
+    }
+
+    /**
+     * Gets a float representing the alpha value in a scale of 0 to 1.
+     * @return a float representing the alpha value in a scale of 0 to 1.
+     */
+    float getAlphaf() {
+        return (rgba & 0xff) * (1f / 255);
+    }
+
+    /**
+     * Clamps a value to 0 to 127 and scales it to 0 to 255, so that 127 maps
+     * to 255 and narrowing by a shift gives the value back.
+     * @param value the value on a scale of 0 to 127
+     * @return the value on a scale of 0 to 255
+     */
+    private static int widen(int value) {
+        if (value > 127) {
+            value = 127;
+        } else if (value < 0) {
+            value = 0;
+        }
+        return (value << 1) | (value >> 6);
     }
 }
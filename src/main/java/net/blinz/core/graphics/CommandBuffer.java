@@ -0,0 +1,255 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.util.Arrays;
+
+/**
+ * A recorded list of Graphics operations. Operations are stored as op codes
+ * and int arguments in one array and object arguments in another, so once the
+ * arrays have grown to fit a frame recording allocates nothing.
+ * @author Blinz Project
+ */
+final class CommandBuffer {
+
+    static final int SET_COLOR = 0;
+    static final int FILL_RECT = 1;
+    static final int DRAW_RECT = 2;
+    static final int DRAW_LINE = 3;
+    static final int FILL_POLYGON = 4;
+    static final int DRAW_POLYGON = 5;
+    static final int DRAW_IMAGE = 6;
+    static final int DRAW_STRING = 7;
+    static final int SET_FONT = 8;
+    static final int TRANSLATE = 9;
+    static final int ENTER_VIEWPORT = 10;
+    static final int EXIT_VIEWPORT = 11;
+    static final int SET_TINT = 12;
+    static final int DRAW_IMAGE_REGION = 13;
+    private int[] ints = new int[1024];
+    private Object[] objects = new Object[256];
+    private int intCount = 0;
+    private int objectCount = 0;
+
+    /**
+     * Empties this buffer, releasing references to the objects it holds.
+     */
+    final void clear() {
+        Arrays.fill(objects, 0, objectCount, null);
+        intCount = 0;
+        objectCount = 0;
+    }
+
+    /**
+     * Appends an op code with no arguments.
+     * @param op the op code
+     */
+    final void add(final int op) {
+        ensureInts(1);
+        ints[intCount++] = op;
+    }
+
+    /**
+     * Appends an op code with two arguments.
+     * @param op the op code
+     * @param a the first argument
+     * @param b the second argument
+     */
+    final void add(final int op, final int a, final int b) {
+        ensureInts(3);
+        ints[intCount++] = op;
+        ints[intCount++] = a;
+        ints[intCount++] = b;
+    }
+
+    /**
+     * Appends an op code with three arguments.
+     * @param op the op code
+     * @param a the first argument
+     * @param b the second argument
+     * @param c the third argument
+     */
+    final void add(final int op, final int a, final int b, final int c) {
+        ensureInts(4);
+        ints[intCount++] = op;
+        ints[intCount++] = a;
+        ints[intCount++] = b;
+        ints[intCount++] = c;
+    }
+
+    /**
+     * Appends an op code with four arguments.
+     * @param op the op code
+     * @param a the first argument
+     * @param b the second argument
+     * @param c the third argument
+     * @param d the fourth argument
+     */
+    final void add(final int op, final int a, final int b, final int c, final int d) {
+        ensureInts(5);
+        ints[intCount++] = op;
+        ints[intCount++] = a;
+        ints[intCount++] = b;
+        ints[intCount++] = c;
+        ints[intCount++] = d;
+    }
+
+    /**
+     * Appends an op code with eight arguments.
+     * @param op the op code
+     * @param a the first argument
+     * @param b the second argument
+     * @param c the third argument
+     * @param d the fourth argument
+     * @param e the fifth argument
+     * @param f the sixth argument
+     * @param g the seventh argument
+     * @param h the eighth argument
+     */
+    final void add(final int op, final int a, final int b, final int c, final int d,
+            final int e, final int f, final int g, final int h) {
+        ensureInts(9);
+        ints[intCount++] = op;
+        ints[intCount++] = a;
+        ints[intCount++] = b;
+        ints[intCount++] = c;
+        ints[intCount++] = d;
+        ints[intCount++] = e;
+        ints[intCount++] = f;
+        ints[intCount++] = g;
+        ints[intCount++] = h;
+    }
+
+    /**
+     * Appends an object argument for the op code last added.
+     * @param object the object argument
+     */
+    final void addObject(final Object object) {
+        if (objectCount == objects.length) {
+            objects = Arrays.copyOf(objects, objects.length * 2);
+        }
+        objects[objectCount++] = object;
+    }
+
+    /**
+     * Appends a Polygon draw, copying its points so that the Polygon may be
+     * changed after it is recorded. Fills also copy the Polygon's cached
+     * triangulation so that replaying them does not triangulate again.
+     * @param op FILL_POLYGON or DRAW_POLYGON
+     * @param polygon the Polygon to record
+     */
+    final void addPolygon(final int op, final Polygon polygon) {
+        synchronized (polygon) {
+            final int points = polygon.size();
+            ensureInts(3 + points * 2 + PolygonMesh.triangulatedLength(points));
+            ints[intCount++] = op;
+            ints[intCount++] = points;
+            intCount += polygon.getPoints(ints, intCount) * 2;
+            if (op == FILL_POLYGON) {
+                final int count = polygon.getTriangles(ints, intCount + 1);
+                ints[intCount] = count;
+                intCount += 1 + count;
+            }
+        }
+    }
+
+    /**
+     * Performs the recorded operations on the given Graphics.
+     * @param graphics the Graphics to draw with
+     */
+    final void replay(final Graphics graphics) {
+        int o = 0;
+        for (int i = 0; i < intCount;) {
+            switch (ints[i++]) {
+                case SET_COLOR:
+                    graphics.setColor(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case SET_TINT:
+                    graphics.setTint(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case FILL_RECT:
+                    graphics.fillRect(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case DRAW_RECT:
+                    graphics.drawRect(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case DRAW_LINE:
+                    graphics.drawLine(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case FILL_POLYGON: {
+                    final int triangles = i + 1 + ints[i] * 2;
+                    graphics.fillPolygon(ints, i + 1, ints[i], ints, triangles + 1, ints[triangles]);
+                    i = triangles + 1 + ints[triangles];
+                    break;
+                }
+                case DRAW_POLYGON:
+                    graphics.drawPolygon(ints, i + 1, ints[i]);
+                    i += 1 + ints[i] * 2;
+                    break;
+                case DRAW_IMAGE:
+                    graphics.drawImage((Image) objects[o++], ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case DRAW_IMAGE_REGION:
+                    graphics.drawImage((Image) objects[o++], ints[i], ints[i + 1], ints[i + 2], ints[i + 3],
+                            ints[i + 4], ints[i + 5], ints[i + 6], ints[i + 7]);
+                    i += 8;
+                    break;
+                case DRAW_STRING: {
+                    final String string = (String) objects[o++];
+                    final Font font = (Font) objects[o++];
+                    if (font == null) {
+                        graphics.drawString(string, ints[i], ints[i + 1]);
+                    } else {
+                        graphics.drawString(string, ints[i], ints[i + 1], font);
+                    }
+                    i += 2;
+                    break;
+                }
+                case SET_FONT:
+                    graphics.setFont((Font) objects[o++]);
+                    break;
+                case TRANSLATE:
+                    graphics.translate(ints[i], ints[i + 1]);
+                    i += 2;
+                    break;
+                case ENTER_VIEWPORT:
+                    graphics.enterViewport(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                    i += 4;
+                    break;
+                case EXIT_VIEWPORT:
+                    graphics.exitViewport();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Grows the int array if it cannot fit the given number of additional ints.
+     * @param count the number of ints about to be added
+     */
+    private void ensureInts(final int count) {
+        if (intCount + count > ints.length) {
+            ints = Arrays.copyOf(ints, Math.max(ints.length * 2, intCount + count));
+        }
+    }
+}
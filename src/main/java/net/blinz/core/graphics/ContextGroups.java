@@ -0,0 +1,85 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2009-2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.util.WeakHashMap;
+import javax.media.opengl.GLContext;
+
+/**
+ * Keeps track of which OpenGL contexts made by this library share their
+ * textures and buffer objects, so that names made in one context can be
+ * reused in another of the same group rather than made again.
+ * @author Blinz Project
+ */
+final class ContextGroups {
+
+    /**
+     * The group of each registered context, contexts of a group share objects.
+     */
+    private static final WeakHashMap<GLContext, Object> groups = new WeakHashMap<GLContext, Object>();
+
+    /**
+     * Constructor
+     */
+    private ContextGroups() {
+    }
+
+    /**
+     * Registers a newly made context.
+     * @param context the new context
+     * @param shareWith the context it was made to share with, or null
+     */
+    static final synchronized void register(final GLContext context, final GLContext shareWith) {
+        Object group = shareWith == null ? null : groups.get(shareWith);
+        if (group == null) {
+            group = new Object();
+            if (shareWith != null) {
+                groups.put(shareWith, group);
+            }
+        }
+        groups.put(context, group);
+    }
+
+    /**
+     * Gets an object standing for the group of the given context, the same
+     * for every context that shares objects with it.
+     * @param context a context
+     * @return the group of the context, or the context itself if it was not
+     * registered
+     */
+    static final synchronized Object group(final GLContext context) {
+        final Object group = groups.get(context);
+        return group == null ? context : group;
+    }
+
+    /**
+     * Indicates whether objects made in one context can be used in another.
+     * @param a a context
+     * @param b another context
+     * @return true if the contexts are the same or share objects, false otherwise
+     */
+    static final synchronized boolean shared(final GLContext a, final GLContext b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        final Object group = groups.get(a);
+        return group != null && group == groups.get(b);
+    }
+}
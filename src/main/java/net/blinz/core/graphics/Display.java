@@ -17,7 +17,10 @@
 package net.blinz.core.graphics;
 
 import java.awt.Dimension;
+import java.awt.DisplayMode;
 import java.awt.Frame;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
 import java.awt.Window;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
@@ -28,6 +31,7 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
@@ -35,7 +39,9 @@ import javax.media.opengl.GL;
 import javax.media.opengl.GLAutoDrawable;
 import javax.media.opengl.GLCanvas;
 import javax.media.opengl.GLCapabilities;
+import javax.media.opengl.GLContext;
 import javax.media.opengl.GLEventListener;
+import net.blinz.core.util.Bounds;
 import net.blinz.core.util.Size;
 import net.blinz.core.input.UserInput;
 
@@ -56,7 +62,11 @@ public class Display {
      */
     private static final GraphicsThread runnable = new GraphicsThread();
     private static final CanvasListener canvasListener = new CanvasListener();
-    private static boolean isFullscreen = false;
+    private static volatile boolean isFullscreen = false;
+    /**
+     * The display mode to use in fullscreen, null to keep the desktop's.
+     */
+    private static DisplayMode displayMode;
     private static boolean isInitialized = false;
     /**
      * Title to be displayed on the window title bar and/or on the taskbar for the
@@ -96,23 +106,125 @@ public class Display {
         if (window != null) {
             return;
         }
-        if (isFullscreen) {
-        } else {
-            window = new Frame();
-            ((Frame) window).setTitle(title);
+        createWindow(null);
+        thread = new Thread(runnable);
+        thread.setName("Graphics");
+        thread.setDaemon(false);
+        thread.start();
+    }
+
+    /**
+     * Sets whether the Display takes the whole screen exclusively rather than
+     * running in a window. Exclusive fullscreen skips the desktop compositor,
+     * and uses the display mode set with setDisplayMode(...). If the Display
+     * is already up, the switch is made on the graphics thread before the next
+     * frame, and textures are kept.
+     * @param fullscreen true for exclusive fullscreen, false for a window
+     */
+    public final static synchronized void setFullscreen(final boolean fullscreen) {
+        if (isFullscreen == fullscreen) {
+            return;
+        }
+        isFullscreen = fullscreen;
+        if (window != null) {
+            runnable.switchWindow = true;
         }
+    }
+
+    /**
+     * Indicates whether the Display takes the whole screen exclusively.
+     * @return true if in fullscreen, false if in a window
+     */
+    public final static boolean isFullscreen() {
+        return isFullscreen;
+    }
+
+    /**
+     * Gets the display modes the screen supports, for use with
+     * setDisplayMode(...).
+     * @return the display modes the screen supports
+     */
+    public final static DisplayMode[] getDisplayModes() {
+        return getDevice().getDisplayModes();
+    }
+
+    /**
+     * Sets the resolution, bit depth and refresh rate of the screen in
+     * fullscreen, applying it at once if already in fullscreen. It is ignored
+     * where the screen's mode cannot be changed.
+     * @param mode one of the modes given by getDisplayModes(), or null to keep
+     * the desktop's mode
+     */
+    public final static synchronized void setDisplayMode(final DisplayMode mode) {
+        displayMode = mode;
+        final GraphicsDevice device = getDevice();
+        if (window != null && device.getFullScreenWindow() == window) {
+            applyDisplayMode(device);
+        }
+    }
+
+    /**
+     * Gets the display mode used in fullscreen.
+     * @return the display mode used in fullscreen, or null if the desktop's
+     * mode is kept
+     */
+    public final static DisplayMode getDisplayMode() {
+        return displayMode;
+    }
+
+    /**
+     * Replaces the window with one for the current fullscreen setting. The new
+     * context shares with the old one, and is made before the old one is
+     * destroyed so that textures and buffers survive. Called on the graphics
+     * thread.
+     */
+    final static synchronized void switchWindow() {
+        if (window == null) {
+            return;
+        }
+        final GraphicsDevice device = getDevice();
+        if (device.getFullScreenWindow() == window) {
+            device.setFullScreenWindow(null);
+        }
+        final Window oldWindow = window;
+        final GLCanvas oldCanvas = runnable.canvas;
+        createWindow(oldCanvas.getContext());
+        runnable.canvas.display();
+        oldCanvas.getContext().destroy();
+        oldWindow.dispose();
+    }
+
+    /**
+     * Creates the window and its GLCanvas for the current fullscreen setting.
+     * @param share the context to share textures and buffers with, or null
+     */
+    private static void createWindow(final GLContext share) {
+        final GraphicsDevice device = getDevice();
+        final Frame frame = new Frame();
+        frame.setTitle(title);
+        window = frame;
 
         final GLCapabilities c = new GLCapabilities();
         c.setHardwareAccelerated(true);
         c.setDoubleBuffered(true);
         runnable.window = window;
-        runnable.canvas = new GLCanvas(c);
+        runnable.canvas = new GLCanvas(c, null, share, device);
+        ContextGroups.register(runnable.canvas.getContext(), share);
         runnable.canvas.setSize(size);
         runnable.canvas.addGLEventListener(canvasListener);
         runnable.canvas.setVisible(true);
-        window.setVisible(true);
-        window.setSize(size);
-        window.add(runnable.canvas);
+        if (isFullscreen) {
+            frame.setUndecorated(true);
+            frame.setResizable(false);
+            window.add(runnable.canvas);
+            device.setFullScreenWindow(window);
+            applyDisplayMode(device);
+            window.validate();
+        } else {
+            window.setVisible(true);
+            window.setSize(size);
+            window.add(runnable.canvas);
+        }
         window.addWindowListener(new WindowAdapter() {
 
             @Override
@@ -129,10 +241,38 @@ public class Display {
             runnable.canvas.addMouseMotionListener((MouseMotionListener) UserInput.getContext());
             runnable.canvas.addMouseListener((MouseListener) UserInput.getContext());
         }
-        thread = new Thread(runnable);
-        thread.setName("Graphics");
-        thread.setDaemon(false);
-        thread.start();
+    }
+
+    /**
+     * Switches the given device to the chosen display mode, if there is one
+     * and the device allows it.
+     * @param device the device showing the fullscreen window
+     */
+    private static void applyDisplayMode(final GraphicsDevice device) {
+        if (displayMode == null || !device.isDisplayChangeSupported()) {
+            return;
+        }
+        try {
+            device.setDisplayMode(displayMode);
+        } catch (IllegalArgumentException ex) {
+            Logger.getLogger(Display.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Gets the screen the Display is shown on.
+     * @return the default screen device
+     */
+    private static GraphicsDevice getDevice() {
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+    }
+
+    /**
+     * Gets the OpenGL context of the display, for sharing textures with.
+     * @return the context of the display, or null if it has not been initialized
+     */
+    final static GLContext getContext() {
+        return runnable.canvas == null ? null : runnable.canvas.getContext();
     }
 
     /**
@@ -150,6 +290,7 @@ public class Display {
      */
     public final static void addCanvas(final Canvas screen) {
         canvasListener.canvas.add(screen);
+        invalidate();
         UserInput.addKeyListener(screen.inputListener);
         UserInput.addMouseListener(screen.inputListener);
         UserInput.addMouseWheelListener(screen.inputListener);
@@ -162,6 +303,7 @@ public class Display {
      */
     public final static void removeCanvas(final Canvas screen) {
         canvasListener.canvas.remove(screen);
+        invalidate();
         UserInput.removeKeyListener(screen.inputListener);
         UserInput.removeMouseListener(screen.inputListener);
         UserInput.removeMouseWheelListener(screen.inputListener);
@@ -255,6 +397,175 @@ public class Display {
         window.setSize(width, height);
     }
 
+    /**
+     * Sets whether only the invalidated areas of each Canvas are redrawn.
+     *
+     * When on, the previous frame is kept and each frame only the union of the
+     * areas reported through Canvas.invalidate is cleared and redrawn. When
+     * nothing has been invalidated nothing is drawn and the buffers are not
+     * swapped. Canvases that change must invalidate what changed to be
+     * redrawn.
+     * @param partialRedraw true to redraw only invalidated areas, false to
+     * redraw everything every frame
+     */
+    public final static void setPartialRedraw(final boolean partialRedraw) {
+        canvasListener.partialRedraw = partialRedraw;
+        invalidate();
+    }
+
+    /**
+     * Indicates whether only the invalidated areas of each Canvas are redrawn.
+     * @return true if only invalidated areas are redrawn, false otherwise
+     */
+    public final static boolean getPartialRedraw() {
+        return canvasListener.partialRedraw;
+    }
+
+    /**
+     * Redraws the whole Display in the next frame, for use when partially
+     * redrawing.
+     */
+    public final static void invalidate() {
+        canvasListener.fullRedraw.set(true);
+    }
+
+    /**
+     * Sets the FramePolicy that decides when each frame starts. The default
+     * policy runs at a fixed 60 frames per second.
+     * @param policy the new FramePolicy
+     */
+    public final static void setFramePolicy(final FramePolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy must not be null");
+        }
+        runnable.policy = policy;
+    }
+
+    /**
+     * Gets the FramePolicy that decides when each frame starts.
+     * @return the current FramePolicy
+     */
+    public final static FramePolicy getFramePolicy() {
+        return runnable.policy;
+    }
+
+    /**
+     * Gets the number of frames actually drawn per second, measured over about
+     * the last second.
+     * @return the achieved frame rate
+     */
+    public final static double getFrameRate() {
+        return runnable.frameRate;
+    }
+
+    /**
+     * Gets the distribution of the time taken by each frame, from the start of
+     * drawing until the buffers were swapped.
+     * @return the frame times
+     */
+    public final static TimingHistogram getFrameTimes() {
+        return runnable.frameTimes;
+    }
+
+    /**
+     * Gets the distribution of the time taken to swap the buffers, which
+     * includes waiting for OpenGL to finish drawing when it is behind.
+     * @return the buffer swap times
+     */
+    public final static TimingHistogram getSwapTimes() {
+        return canvasListener.swapTimes;
+    }
+
+    /**
+     * Gets the distribution of the time taken by the periodic sweep of unused
+     * images.
+     * @return the image sweep times
+     */
+    public final static TimingHistogram getImageSweepTimes() {
+        return runnable.sweepTimes;
+    }
+
+    /**
+     * Adds the given TimingListener to be notified about once a second that
+     * the timings have been updated.
+     * @param listener the TimingListener to be added
+     */
+    public final static void addTimingListener(final TimingListener listener) {
+        runnable.timingListeners.add(listener);
+    }
+
+    /**
+     * Removes the given TimingListener from the TimingListeners to be notified
+     * of updated timings.
+     * @param listener the TimingListener to be removed
+     */
+    public final static void removeTimingListener(final TimingListener listener) {
+        runnable.timingListeners.remove(listener);
+    }
+
+    /**
+     * Sets whether the OpenGL calls made while drawing are counted. Counting
+     * routes every call through a proxy, so it slows drawing down noticeably,
+     * when off it costs nothing.
+     * @param counting true to count OpenGL calls, false otherwise
+     */
+    public final static void setGLCallCounting(final boolean counting) {
+        canvasListener.glCallCounting = counting;
+    }
+
+    /**
+     * Indicates whether the OpenGL calls made while drawing are counted.
+     * @return true if OpenGL calls are counted, false otherwise
+     */
+    public final static boolean getGLCallCounting() {
+        return canvasListener.glCallCounting;
+    }
+
+    /**
+     * Gets the counts of OpenGL calls made in each whole frame, kept while
+     * setGLCallCounting(true) is in effect. Counts for each Canvas are
+     * available from Canvas.getGLCallStats().
+     * @return the GLCallStats of the Display
+     */
+    public final static GLCallStats getGLCallStats() {
+        return canvasListener.callStats;
+    }
+
+    /**
+     * Gets the number of OpenGL state changes that were sent to the driver in
+     * the last frame.
+     * @return the number of OpenGL state changes made in the last frame
+     */
+    public final static int getStateChangesIssued() {
+        return canvasListener.state.getIssued();
+    }
+
+    /**
+     * Gets the number of OpenGL state changes that were skipped in the last
+     * frame because they would not have changed the state.
+     * @return the number of OpenGL state changes skipped in the last frame
+     */
+    public final static int getStateChangesSkipped() {
+        return canvasListener.state.getSkipped();
+    }
+
+    /**
+     * Gets the number of primitives that were drawn in the last frame.
+     * @return the number of primitives drawn in the last frame
+     */
+    public final static int getPrimitivesSubmitted() {
+        return canvasListener.state.getSubmitted();
+    }
+
+    /**
+     * Gets the number of primitives that were not drawn in the last frame
+     * because they were entirely outside the screen or their viewport.
+     * @return the number of primitives culled in the last frame
+     */
+    public final static int getPrimitivesCulled() {
+        return canvasListener.state.getCulled();
+    }
+
     /**
      * Sets the title that will appear at the top of the window and on the taskbar
      * for this application.
@@ -333,23 +644,63 @@ class GraphicsThread implements Runnable {
      * Flag to indicate whether the thread should continue.
      */
     boolean isRunning = true;
+    /**
+     * Set to replace the window before the next frame.
+     */
+    volatile boolean switchWindow = false;
     GLCanvas canvas;
     Window window;
+    /**
+     * Decides when each frame starts.
+     */
+    volatile FramePolicy policy = FramePolicy.fixedRate(60);
+    /**
+     * Frames per second achieved over the last measured second.
+     */
+    volatile double frameRate = 0;
+    final TimingHistogram frameTimes = new TimingHistogram();
+    final TimingHistogram sweepTimes = new TimingHistogram();
+    final Vector<TimingListener> timingListeners = new Vector<TimingListener>();
 
     @Override
     public void run() {
         long lastImageClearTime = System.currentTimeMillis();
+        long rateStart = System.nanoTime();
+        int frames = 0;
         while (isRunning) {
+            if (switchWindow) {
+                switchWindow = false;
+                Display.switchWindow();
+            }
+            final long frameStart = System.nanoTime();
+            FrameClock.tick();
             canvas.display();
+            frameTimes.record(System.nanoTime() - frameStart);
             if (System.currentTimeMillis() - lastImageClearTime > 30000) {
+                final long sweepStart = System.nanoTime();
                 ImageLoader.clearImages();
+                sweepTimes.record(System.nanoTime() - sweepStart);
                 lastImageClearTime = System.currentTimeMillis();
             }
             try {
-                Thread.sleep(15);
+                policy.waitForNextFrame();
             } catch (InterruptedException ex) {
                 Logger.getLogger(GraphicsThread.class.getName()).log(Level.SEVERE, null, ex);
             }
+            frames++;
+            final long now = System.nanoTime();
+            if (now - rateStart >= 1000000000L) {
+                frameRate = frames * 1000000000.0 / (now - rateStart);
+                rateStart = now;
+                frames = 0;
+                for (int i = 0; i < timingListeners.size(); i++) {
+                    timingListeners.get(i).timingsUpdated();
+                }
+            }
+        }
+        final GraphicsDevice device = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+        if (device.getFullScreenWindow() == window) {
+            device.setFullScreenWindow(null);
         }
         canvas.getContext().destroy();
         window.dispose();
@@ -368,6 +719,31 @@ class CanvasListener implements GLEventListener {
      */
     final Size drawingArea = new Size();
     final Vector<Canvas> canvas = new Vector<Canvas>();
+    /**
+     * Shadow of the OpenGL state of the context this draws in.
+     */
+    final GLState state = new GLState();
+    /**
+     * Whether only invalidated areas are redrawn.
+     */
+    volatile boolean partialRedraw = false;
+    /**
+     * Set when everything must be redrawn in the next partial redraw.
+     */
+    final AtomicBoolean fullRedraw = new AtomicBoolean(true);
+    final TimingHistogram swapTimes = new TimingHistogram();
+    /**
+     * Whether GL calls are counted.
+     */
+    volatile boolean glCallCounting = false;
+    final GLCallStats callStats = new GLCallStats();
+    private final GLCounter counter = new GLCounter();
+    private final FrameCache frame = new FrameCache();
+    private final Bounds region = new Bounds();
+    /**
+     * The swap interval last set in the current context, -1 if unknown.
+     */
+    private int swapInterval = -1;
 
     @Override
     public void init(final GLAutoDrawable drawable) {
@@ -379,14 +755,114 @@ class CanvasListener implements GLEventListener {
         gl.glEnable(GL.GL_BLEND);
         gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
         gl.glHint(GL.GL_LINE_SMOOTH_HINT, GL.GL_DONT_CARE);
+        state.reset();
+        fullRedraw.set(true);
+        swapInterval = -1;
     }
 
     @Override
     public void display(final GLAutoDrawable drawable) {
-        drawable.getGL().glClear(GL.GL_COLOR_BUFFER_BIT);
+        if (glCallCounting) {
+            state.frame(counter.wrap(drawable.getGL()));
+            state.counter = counter;
+            callStats.mark(counter.counts);
+        } else {
+            state.frame(drawable.getGL());
+            state.counter = null;
+        }
+        final int interval = Display.getFramePolicy().getSwapInterval();
+        if (interval != swapInterval) {
+            drawable.getGL().setSwapInterval(interval);
+            swapInterval = interval;
+        }
+        ImageLoader.disposeTextures(state);
+        PolygonMesh.disposeBuffers(state);
+        //buffers are swapped here so that the swap can be timed
+        if (drawable.getAutoSwapBufferMode()) {
+            drawable.setAutoSwapBufferMode(false);
+        }
+        if (partialRedraw) {
+            redraw(drawable);
+        } else {
+            state.disable(GL.GL_SCISSOR_TEST);
+            state.gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+            for (final Canvas screen : canvas) {
+                screen.draw(state, null);
+            }
+            swapBuffers(drawable);
+        }
+        if (state.counter != null) {
+            callStats.record(counter.counts);
+        }
+    }
+
+    /**
+     * Swaps the buffers of the given drawable, recording how long it took.
+     * @param drawable the GLAutoDrawable to swap
+     */
+    private void swapBuffers(final GLAutoDrawable drawable) {
+        final long start = System.nanoTime();
+        drawable.swapBuffers();
+        swapTimes.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Redraws the union of the areas invalidated since the last frame over the
+     * previous frame, and swaps the buffers if anything was drawn.
+     * @param drawable the GLAutoDrawable to draw to
+     */
+    private void redraw(final GLAutoDrawable drawable) {
+        final int width = drawable.getWidth();
+        final int height = drawable.getHeight();
+        //union of the dirty areas in window coordinates, origin at the lower left
+        int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE;
+        int x2 = Integer.MIN_VALUE, y2 = Integer.MIN_VALUE;
         for (final Canvas screen : canvas) {
-            screen.draw(drawable);
+            if (screen.takeDirty(region)) {
+                final Bounds b = screen.getBounds();
+                x1 = Math.min(x1, b.x + region.x);
+                y1 = Math.min(y1, b.y + b.height - region.y2());
+                x2 = Math.max(x2, b.x + region.x2());
+                y2 = Math.max(y2, b.y + b.height - region.y);
+            }
+        }
+        final boolean full = fullRedraw.getAndSet(false);
+        if (full) {
+            x1 = 0;
+            y1 = 0;
+            x2 = width;
+            y2 = height;
+        }
+        x1 = Math.max(x1, 0);
+        y1 = Math.max(y1, 0);
+        x2 = Math.min(x2, width);
+        y2 = Math.min(y2, height);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        if (full) {
+            frame.prepare(state, width, height);
+        } else if (!frame.restore(state, width, height)) {
+            //the previous frame was lost
+            x1 = 0;
+            y1 = 0;
+            x2 = width;
+            y2 = height;
+        }
+        final GL gl = state.gl;
+        state.enable(GL.GL_SCISSOR_TEST);
+        state.scissor(x1, y1, x2 - x1, y2 - y1);
+        gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+        for (final Canvas screen : canvas) {
+            final Bounds b = screen.getBounds();
+            if (Bounds.intersects(b.x, b.y, b.width, b.height, x1, y1, x2 - x1, y2 - y1)) {
+                region.setBounds(x1 - b.x, b.y + b.height - y2, x2 - x1, y2 - y1);
+                screen.draw(state, region);
+            }
         }
+        frame.save(state, x1, y1, x2 - x1, y2 - y1);
+        swapBuffers(drawable);
     }
 
     @Override
@@ -400,6 +876,8 @@ class CanvasListener implements GLEventListener {
         gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
         gl.glHint(GL.GL_LINE_SMOOTH_HINT, GL.GL_DONT_CARE);
         drawingArea.setSize(drawable.getWidth(), drawable.getHeight());
+        state.reset();
+        fullRedraw.set(true);
     }
 
     @Override
@@ -413,5 +891,7 @@ class CanvasListener implements GLEventListener {
         gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
         gl.glHint(GL.GL_LINE_SMOOTH_HINT, GL.GL_DONT_CARE);
         drawingArea.setSize(drawable.getWidth(), drawable.getHeight());
+        state.reset();
+        fullRedraw.set(true);
     }
 }
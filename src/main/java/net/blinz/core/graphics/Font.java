@@ -56,7 +56,7 @@ public final class Font {
      * @return int width of the specified char, rounded from floating point value
      */
     public final int getCharWidth(final char character) {
-        return Math.round(stub.getRenderer().getCharWidth(character));
+        return Math.round(stub.getCharWidth(character));
     }
 
     /**
@@ -65,11 +65,7 @@ public final class Font {
      * @return the width of the given String when drawn on the screen with the current font
      */
     public final long getStringWidth(final String string) {
-        double total = 0;
-        for (int i = 0; i < string.length(); i++) {
-            total += stub.getRenderer().getCharWidth(string.charAt(i));
-        }
-        return Math.round(total);
+        return Math.round(stub.getStringWidth(string));
     }
 
     /**
@@ -17,6 +17,9 @@
 package net.blinz.core.graphics;
 
 import com.sun.opengl.util.j2d.TextRenderer;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+import javax.media.opengl.GLContext;
 
 /**
  * Contains internal implementation of the font.
@@ -24,9 +27,33 @@ import com.sun.opengl.util.j2d.TextRenderer;
  */
 final class FontStub extends ResourceStub {
 
+    private static final int STRING_CACHE_SIZE = 512;
+    /**
+     * Renderer used to measure characters, never drawn with.
+     */
     private TextRenderer renderer;
+    /**
+     * Renderers drawn with, one per context group since each keeps its glyphs
+     * in a texture of the context it first drew in.
+     */
+    private final WeakHashMap<Object, TextRenderer> renderers = new WeakHashMap<Object, TextRenderer>();
+    private final java.awt.Font font;
     private String name;
     private int size;
+    /**
+     * Advance widths of the Latin-1 characters.
+     */
+    private final float[] latinAdvances = new float[256];
+    /**
+     * Advance widths of all other characters, in pages of 256 created as
+     * characters from them are measured. Unmeasured entries are negative.
+     */
+    private final float[][] advancePages = new float[256][];
+    /**
+     * Widths of recently measured Strings, indexed by hash code.
+     */
+    private final String[] cachedStrings = new String[STRING_CACHE_SIZE];
+    private final double[] cachedWidths = new double[STRING_CACHE_SIZE];
 
     /**
      * Constructor
@@ -37,7 +64,11 @@ final class FontStub extends ResourceStub {
     FontStub(String name, int size, java.awt.Font font) {
         this.name = name;
         this.size = size;
+        this.font = font;
         renderer = new TextRenderer(font);
+        for (int i = 0; i < latinAdvances.length; i++) {
+            latinAdvances[i] = renderer.getCharWidth((char) i);
+        }
     }
 
     /**
@@ -57,10 +88,69 @@ final class FontStub extends ResourceStub {
     }
 
     /**
-     * Gets a JOGL TextRender for this font.
-     * @return the JOGL TextRender for the font this FontStub represents.
+     * Gets the JOGL TextRenderer to draw this font with in the given context,
+     * creating it if none exists for the context's group. Contexts of a group
+     * share the renderer, so it must be locked while drawing with it.
+     * @param context the context to draw in
+     * @return the JOGL TextRenderer for the font this FontStub represents
+     */
+    final synchronized TextRenderer getRenderer(final GLContext context) {
+        final Object group = ContextGroups.group(context);
+        TextRenderer retval = renderers.get(group);
+        if (retval == null) {
+            retval = new TextRenderer(font);
+            renderers.put(group, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Gets the AWT form of the font.
+     * @return the AWT Font this FontStub represents
+     */
+    final java.awt.Font getFont() {
+        return font;
+    }
+
+    /**
+     * Gets the advance width of the given character.
+     * @param character the char to measure
+     * @return the width of the given char
+     */
+    final synchronized float getCharWidth(final char character) {
+        if (character < 256) {
+            return latinAdvances[character];
+        }
+        float[] page = advancePages[character >> 8];
+        if (page == null) {
+            page = new float[256];
+            Arrays.fill(page, -1);
+            advancePages[character >> 8] = page;
+        }
+        if (page[character & 0xff] < 0) {
+            page[character & 0xff] = renderer.getCharWidth(character);
+        }
+        return page[character & 0xff];
+    }
+
+    /**
+     * Gets the width of the given String, the sum of the advances of its
+     * characters.
+     * @param string the String to measure
+     * @return the width of the given String
      */
-    final TextRenderer getRenderer() {
-        return renderer;
+    final synchronized double getStringWidth(final String string) {
+        final int slot = string.hashCode() & (STRING_CACHE_SIZE - 1);
+        final String cached = cachedStrings[slot];
+        if (cached == string || (cached != null && cached.equals(string))) {
+            return cachedWidths[slot];
+        }
+        double total = 0;
+        for (int i = 0; i < string.length(); i++) {
+            total += getCharWidth(string.charAt(i));
+        }
+        cachedStrings[slot] = string;
+        cachedWidths[slot] = total;
+        return total;
     }
 }
@@ -0,0 +1,161 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+/**
+ * Keeps a copy of the last frame drawn in a texture, so that a frame can be
+ * built from the previous one by redrawing only the parts that changed. The
+ * contents of the back buffer are undefined after a swap, so they cannot be
+ * relied on for this.
+ * @author Blinz Project
+ */
+final class FrameCache {
+
+    private int texture = 0;
+    private int width, height;
+    private int textureWidth, textureHeight;
+    /**
+     * The context in which the texture was created.
+     */
+    private GLContext context;
+
+    /**
+     * Draws the saved frame over the whole drawable.
+     * @param state the GLState of the current context
+     * @param width the width of the drawable
+     * @param height the height of the drawable
+     * @return true if the saved frame was drawn, false if there was no frame of
+     * the given size saved in the current context
+     */
+    final boolean restore(final GLState state, final int width, final int height) {
+        if (!prepare(state, width, height)) {
+            return false;
+        }
+        final GL gl = state.gl;
+        state.disable(GL.GL_SCISSOR_TEST);
+        state.disable(GL.GL_BLEND);
+        state.disable(GL.GL_ALPHA_TEST);
+        state.enable(GL.GL_TEXTURE_2D);
+        state.texEnvMode(GL.GL_REPLACE);
+        state.bindTexture(texture);
+        state.viewport(0, 0, width, height);
+        state.ortho(width, height);
+        final float right = (float) width / textureWidth;
+        final float top = (float) height / textureHeight;
+        //the frame's bottom row is the texture's first
+        gl.glBegin(GL.GL_QUADS);
+        gl.glTexCoord2f(0, top);
+        gl.glVertex2i(0, 0);
+        gl.glTexCoord2f(right, top);
+        gl.glVertex2i(width, 0);
+        gl.glTexCoord2f(right, 0);
+        gl.glVertex2i(width, height);
+        gl.glTexCoord2f(0, 0);
+        gl.glVertex2i(0, height);
+        gl.glEnd();
+        return true;
+    }
+
+    /**
+     * Makes sure there is a texture to hold a frame of the given size in the
+     * current context, creating one if there is not. A texture of the right
+     * size made in a context sharing with the current one, such as the window
+     * replaced by a fullscreen switch, is reused.
+     * @param state the GLState of the current context
+     * @param width the width of the drawable
+     * @param height the height of the drawable
+     * @return true if the texture already existed and holds the saved frame,
+     * false if it was just created or was made for another drawable
+     */
+    final boolean prepare(final GLState state, final int width, final int height) {
+        final GLContext current = GLContext.getCurrent();
+        if (texture != 0 && width == this.width && height == this.height) {
+            if (context == current) {
+                return true;
+            }
+            if (ContextGroups.shared(context, current)) {
+                context = current;
+                return false;
+            }
+        }
+        create(state, width, height);
+        return false;
+    }
+
+    /**
+     * Copies the given area of the back buffer into the saved frame.
+     * @param state the GLState of the current context
+     * @param x the x coordinate of the lower left corner of the area
+     * @param y the y coordinate of the lower left corner of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    final void save(final GLState state, final int x, final int y, final int width, final int height) {
+        state.bindTexture(texture);
+        state.gl.glCopyTexSubImage2D(GL.GL_TEXTURE_2D, 0, x, y, x, y, width, height);
+    }
+
+    /**
+     * Creates a texture large enough to hold a frame of the given size,
+     * deleting the old one if it belongs to the current context or one sharing
+     * with it, or leaving it to be deleted by its own context otherwise.
+     * @param state the GLState of the current context
+     * @param width the width of the drawable
+     * @param height the height of the drawable
+     */
+    private void create(final GLState state, final int width, final int height) {
+        final GL gl = state.gl;
+        final GLContext current = GLContext.getCurrent();
+        if (texture != 0) {
+            if (ContextGroups.shared(context, current)) {
+                gl.glDeleteTextures(1, new int[]{texture}, 0);
+                state.forgetTexture();
+            } else {
+                ImageLoader.disposeLater(context, texture);
+            }
+        }
+        context = current;
+        this.width = width;
+        this.height = height;
+        textureWidth = powerOfTwo(width);
+        textureHeight = powerOfTwo(height);
+        final int[] name = new int[1];
+        gl.glGenTextures(1, name, 0);
+        texture = name[0];
+        state.bindTexture(texture);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGB8, textureWidth, textureHeight, 0,
+                GL.GL_RGB, GL.GL_UNSIGNED_BYTE, null);
+    }
+
+    /**
+     * Gets the smallest power of two no less than the given number.
+     * @param n the number to round up
+     * @return the smallest power of two no less than n
+     */
+    private static int powerOfTwo(final int n) {
+        int retval = 1;
+        while (retval < n) {
+            retval <<= 1;
+        }
+        return retval;
+    }
+}
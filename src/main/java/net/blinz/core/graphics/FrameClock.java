@@ -0,0 +1,58 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2009-2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+/**
+ * The time shared by everything animated, sampled once at the start of each
+ * frame so that all Animations drawn in a frame agree on it and none of them
+ * read the system clock themselves.
+ * @author Blinz Project
+ */
+final class FrameClock {
+
+    private static final long START = System.nanoTime();
+    /**
+     * Milliseconds from START to the start of the current frame.
+     */
+    private static volatile long time = 0;
+
+    /**
+     * Constructor
+     */
+    private FrameClock() {
+    }
+
+    /**
+     * Samples the clock for a new frame. Frames may be started by several
+     * renderers, the time never goes backwards.
+     */
+    static final synchronized void tick() {
+        final long now = (System.nanoTime() - START) / 1000000;
+        if (now > time) {
+            time = now;
+        }
+    }
+
+    /**
+     * Gets the time the current frame started at.
+     * @return milliseconds from an arbitrary fixed point to the start of the
+     * current frame
+     */
+    static final long now() {
+        return time;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+/**
+ * Decides when the graphics thread starts each frame. Set one with
+ * Display.setFramePolicy(policy), the policies provided are created by the
+ * static methods of this class.
+ *
+ * A FramePolicy keeps track of its own deadlines, so an instance should only
+ * be given to the Display once.
+ * @author Blinz Project
+ */
+public abstract class FramePolicy {
+
+    /**
+     * Creates a policy that starts frames at a fixed rate by sleeping until
+     * each deadline. Deadlines are kept on a fixed schedule so that time lost
+     * to a late frame is made up by the next ones, unless the thread falls a
+     * whole frame behind in which case the schedule starts over.
+     * @param framesPerSecond the target frame rate
+     * @return a fixed rate FramePolicy
+     */
+    public static FramePolicy fixedRate(final int framesPerSecond) {
+        return new FixedRate(framesPerSecond, 0);
+    }
+
+    /**
+     * Creates a policy that starts frames at a fixed rate, sleeping until
+     * shortly before each deadline and yielding until the deadline itself.
+     * This meets deadlines more precisely than fixedRate on systems with a
+     * coarse sleep, for a little more CPU time.
+     * @param framesPerSecond the target frame rate
+     * @return a hybrid sleeping and spinning FramePolicy
+     */
+    public static FramePolicy hybrid(final int framesPerSecond) {
+        return new FixedRate(framesPerSecond, FixedRate.SPIN_TIME);
+    }
+
+    /**
+     * Creates a policy that lets the swap of buffers wait for the vertical
+     * retrace of the screen, frames start as soon as the previous one is
+     * shown. Whether the driver honours this is up to it.
+     * @return a vsync driven FramePolicy
+     */
+    public static FramePolicy vsync() {
+        return new Vsync();
+    }
+
+    /**
+     * Creates a policy that starts each frame as soon as the last one ends,
+     * for benchmarking.
+     * @return an uncapped FramePolicy
+     */
+    public static FramePolicy uncapped() {
+        return new Uncapped();
+    }
+
+    /**
+     * Gets the number of vertical retraces a buffer swap should wait for.
+     * @return the swap interval, 0 to not wait
+     */
+    public int getSwapInterval() {
+        return 0;
+    }
+
+    /**
+     * Called on the graphics thread after each frame, returns when the next
+     * frame should start.
+     * @throws InterruptedException if the graphics thread is interrupted while waiting
+     */
+    public abstract void waitForNextFrame() throws InterruptedException;
+
+    /**
+     * Starts frames at a fixed rate.
+     */
+    private static final class FixedRate extends FramePolicy {
+
+        /**
+         * How long before a deadline the hybrid policy stops sleeping.
+         */
+        static final long SPIN_TIME = 2000000;
+        private final long period;
+        private final long spinTime;
+        private long deadline = 0;
+
+        /**
+         * Constructor
+         * @param framesPerSecond the target frame rate
+         * @param spinTime how long before each deadline to stop sleeping, in nanoseconds
+         */
+        FixedRate(final int framesPerSecond, final long spinTime) {
+            if (framesPerSecond <= 0) {
+                throw new IllegalArgumentException("framesPerSecond must be positive");
+            }
+            this.period = 1000000000L / framesPerSecond;
+            this.spinTime = spinTime;
+        }
+
+        @Override
+        public final void waitForNextFrame() throws InterruptedException {
+            final long now = System.nanoTime();
+            if (deadline == 0 || now - deadline > period) {
+                //first frame, or fell more than a frame behind
+                deadline = now + period;
+            } else {
+                deadline += period;
+            }
+            final long sleep = deadline - now - spinTime;
+            if (sleep > 0) {
+                Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+            }
+            while (System.nanoTime() - deadline < 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Waits for the vertical retrace.
+     */
+    private static final class Vsync extends FramePolicy {
+
+        /**
+         * A frame that ended this soon after the last was not swapped and so
+         * did not wait for the retrace.
+         */
+        private static final long MIN_FRAME = 1000000;
+        private long lastFrame = 0;
+
+        @Override
+        public final int getSwapInterval() {
+            return 1;
+        }
+
+        @Override
+        public final void waitForNextFrame() throws InterruptedException {
+            final long now = System.nanoTime();
+            if (now - lastFrame < MIN_FRAME) {
+                Thread.sleep(1);
+            }
+            lastFrame = System.nanoTime();
+        }
+    }
+
+    /**
+     * Does not wait.
+     */
+    private static final class Uncapped extends FramePolicy {
+
+        @Override
+        public final void waitForNextFrame() {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+/**
+ * Counts of OpenGL calls made while drawing, for the whole Display or for one
+ * Canvas. Calls are only counted while Display.setGLCallCounting(true) is in
+ * effect. Counts are kept for the last frame, as rolling totals over the last
+ * ROLLING_FRAMES frames and as totals since creation or reset.
+ *
+ * Only calls made through the GL of the drawable are counted. TextRenderer
+ * draws, binds its glyph textures and begins and ends through its own paths,
+ * so text shows up only as TEXT_CYCLES, not in the other counters.
+ * @author Blinz Project
+ */
+public final class GLCallStats {
+
+    /**
+     * Counter of calls that draw vertices, such as glDrawArrays and glDrawElements.
+     */
+    public static final int DRAW_CALLS = 0;
+    /**
+     * Counter of glBindTexture calls.
+     */
+    public static final int TEXTURE_BINDS = 1;
+    /**
+     * Counter of calls that enable or disable blending.
+     */
+    public static final int BLEND_TOGGLES = 2;
+    /**
+     * Counter of glBegin/glEnd pairs.
+     */
+    public static final int BEGIN_END_PAIRS = 3;
+    /**
+     * Counter of TextRenderer beginRendering/endRendering cycles.
+     */
+    public static final int TEXT_CYCLES = 4;
+    /**
+     * Number of counters.
+     */
+    static final int COUNTERS = 5;
+    /**
+     * Number of frames the rolling totals cover.
+     */
+    public static final int ROLLING_FRAMES = 60;
+    private final long[] start = new long[COUNTERS];
+    private final long[] lastFrame = new long[COUNTERS];
+    private final long[] total = new long[COUNTERS];
+    private long frames = 0;
+    /**
+     * Counts of each of the last ROLLING_FRAMES frames, oldest overwritten first.
+     */
+    private final long[][] window = new long[ROLLING_FRAMES][COUNTERS];
+    private final long[] rollingTotal = new long[COUNTERS];
+    private int windowNext = 0;
+    private int windowFrames = 0;
+
+    /**
+     * Gets the number of calls of the given counter made in the last frame
+     * counted.
+     * @param counter the counter, such as DRAW_CALLS
+     * @return the number of calls in the last frame
+     */
+    public final synchronized long getLastFrame(final int counter) {
+        return lastFrame[counter];
+    }
+
+    /**
+     * Gets the number of calls of the given counter made in all frames counted
+     * since these GLCallStats were created or reset.
+     * @param counter the counter, such as DRAW_CALLS
+     * @return the total number of calls
+     */
+    public final synchronized long getTotal(final int counter) {
+        return total[counter];
+    }
+
+    /**
+     * Gets the number of calls of the given counter made in the last
+     * getRollingFrames() frames counted.
+     * @param counter the counter, such as DRAW_CALLS
+     * @return the number of calls in the rolling window
+     */
+    public final synchronized long getRollingTotal(final int counter) {
+        return rollingTotal[counter];
+    }
+
+    /**
+     * Gets the number of frames the rolling totals currently cover, at most
+     * ROLLING_FRAMES.
+     * @return the number of frames in the rolling window
+     */
+    public final synchronized int getRollingFrames() {
+        return windowFrames;
+    }
+
+    /**
+     * Gets the average number of calls of the given counter made per frame
+     * over the last getRollingFrames() frames counted.
+     * @param counter the counter, such as DRAW_CALLS
+     * @return the average number of calls per frame in the rolling window
+     */
+    public final synchronized double getRollingAverage(final int counter) {
+        return windowFrames == 0 ? 0 : (double) rollingTotal[counter] / windowFrames;
+    }
+
+    /**
+     * Gets the number of frames counted since these GLCallStats were created
+     * or reset.
+     * @return the number of frames counted
+     */
+    public final synchronized long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Gets the average number of calls of the given counter made per frame
+     * since these GLCallStats were created or reset.
+     * @param counter the counter, such as DRAW_CALLS
+     * @return the average number of calls per frame
+     */
+    public final synchronized double getAverage(final int counter) {
+        return frames == 0 ? 0 : (double) total[counter] / frames;
+    }
+
+    /**
+     * Clears the totals, the rolling totals and the last frame's counts.
+     */
+    public final synchronized void reset() {
+        for (int i = 0; i < COUNTERS; i++) {
+            lastFrame[i] = 0;
+            total[i] = 0;
+            rollingTotal[i] = 0;
+        }
+        frames = 0;
+        windowNext = 0;
+        windowFrames = 0;
+    }
+
+    /**
+     * Notes the counts at the start of the work being measured.
+     * @param counts the running counts of a GLCounter
+     */
+    final synchronized void mark(final long[] counts) {
+        System.arraycopy(counts, 0, start, 0, COUNTERS);
+    }
+
+    /**
+     * Records the calls made since mark(counts) as one frame.
+     * @param counts the running counts of the same GLCounter
+     */
+    final synchronized void record(final long[] counts) {
+        final long[] slot = window[windowNext];
+        for (int i = 0; i < COUNTERS; i++) {
+            lastFrame[i] = counts[i] - start[i];
+            total[i] += lastFrame[i];
+            //the slot still holds the frame falling out of the window, if full
+            rollingTotal[i] += lastFrame[i] - (windowFrames == ROLLING_FRAMES ? slot[i] : 0);
+            slot[i] = lastFrame[i];
+        }
+        frames++;
+        windowNext = (windowNext + 1) % ROLLING_FRAMES;
+        if (windowFrames < ROLLING_FRAMES) {
+            windowFrames++;
+        }
+    }
+}
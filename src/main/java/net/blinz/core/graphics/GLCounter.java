@@ -0,0 +1,96 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import javax.media.opengl.GL;
+
+/**
+ * Wraps a GL in a proxy that counts the calls made through it by kind. Only
+ * used while GL call counting is on, otherwise the GL is used directly.
+ * @author Blinz Project
+ */
+final class GLCounter implements InvocationHandler {
+
+    /**
+     * Counter each counted GL method belongs to, glEnable and glDisable are
+     * checked separately.
+     */
+    private static final HashMap<String, Integer> counters = new HashMap<String, Integer>();
+
+    static {
+        counters.put("glDrawArrays", GLCallStats.DRAW_CALLS);
+        counters.put("glDrawElements", GLCallStats.DRAW_CALLS);
+        counters.put("glDrawRangeElements", GLCallStats.DRAW_CALLS);
+        counters.put("glMultiDrawArrays", GLCallStats.DRAW_CALLS);
+        counters.put("glMultiDrawElements", GLCallStats.DRAW_CALLS);
+        counters.put("glCallList", GLCallStats.DRAW_CALLS);
+        counters.put("glCallLists", GLCallStats.DRAW_CALLS);
+        counters.put("glBindTexture", GLCallStats.TEXTURE_BINDS);
+        counters.put("glBegin", GLCallStats.BEGIN_END_PAIRS);
+    }
+    /**
+     * Running counts of calls, indexed by the counters of GLCallStats.
+     */
+    final long[] counts = new long[GLCallStats.COUNTERS];
+    private GL target;
+    private GL proxy;
+
+    /**
+     * Gets a GL that counts the calls made through it and passes them on to
+     * the given GL.
+     * @param gl the GL to count calls to
+     * @return the counting GL
+     */
+    final GL wrap(final GL gl) {
+        if (gl != target) {
+            target = gl;
+            proxy = (GL) Proxy.newProxyInstance(GL.class.getClassLoader(),
+                    new Class<?>[]{GL.class}, this);
+        }
+        return proxy;
+    }
+
+    /**
+     * Counts one call of the given counter that is not made through the GL.
+     * @param counter the counter, such as GLCallStats.TEXT_CYCLES
+     */
+    final void count(final int counter) {
+        counts[counter]++;
+    }
+
+    @Override
+    public final Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final String name = method.getName();
+        final Integer counter = counters.get(name);
+        if (counter != null) {
+            counts[counter]++;
+        } else if ((name.equals("glEnable") || name.equals("glDisable"))
+                && ((Integer) args[0]).intValue() == GL.GL_BLEND) {
+            counts[GLCallStats.BLEND_TOGGLES]++;
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
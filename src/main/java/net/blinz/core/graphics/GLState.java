@@ -0,0 +1,511 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import javax.media.opengl.GL;
+
+/**
+ * Keeps a copy of the OpenGL state set through it so that calls which would
+ * not change anything are never made. One instance exists per OpenGL context.
+ * @author Blinz Project
+ */
+final class GLState {
+
+    private static final int UNKNOWN = -1;
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    /**
+     * Capabilities tracked by enable(cap) and disable(cap), in slot order.
+     */
+    private static final int[] CAPS = {GL.GL_BLEND, GL.GL_ALPHA_TEST, GL.GL_TEXTURE_2D,
+        GL.GL_SCISSOR_TEST};
+    /**
+     * Client states tracked by enableClientState(array) and
+     * disableClientState(array), in slot order.
+     */
+    private static final int[] ARRAYS = {GL.GL_VERTEX_ARRAY, GL.GL_TEXTURE_COORD_ARRAY,
+        GL.GL_COLOR_ARRAY};
+    /**
+     * The GL to issue calls to.
+     */
+    GL gl;
+    /**
+     * Counts the calls made through gl, null when GL call counting is off.
+     */
+    GLCounter counter;
+    private final int[] caps = new int[CAPS.length];
+    private final int[] arrays = new int[ARRAYS.length];
+    private int blendSrc, blendDst;
+    /**
+     * Whether blend functions are being set for drawing into a CanvasLayer,
+     * and whether the current one was.
+     */
+    private boolean layerBlending;
+    private boolean blendForLayer;
+    private int alphaFunc;
+    private float alphaRef;
+    private int texEnvMode;
+    private int texture;
+    private int arrayBuffer;
+    private int elementBuffer;
+    private boolean colorKnown;
+    private int color;
+    private boolean viewportKnown;
+    private int viewportX, viewportY, viewportWidth, viewportHeight;
+    private boolean scissorKnown;
+    private int scissorX, scissorY, scissorWidth, scissorHeight;
+    private boolean matrixKnown;
+    private int orthoWidth, orthoHeight;
+    private int translateX, translateY;
+    private int issued, skipped;
+    private int lastIssued, lastSkipped;
+    /**
+     * Primitives drawn and primitives dropped for being outside the clip in
+     * the current frame, counted by Graphics.
+     */
+    int submitted, culled;
+    private int lastSubmitted, lastCulled;
+
+    /**
+     * Constructor
+     */
+    GLState() {
+        reset();
+    }
+
+    /**
+     * Forgets everything known about the OpenGL state, for use when the
+     * context is new or has been changed without going through this object.
+     */
+    final void reset() {
+        invalidate();
+        viewportKnown = false;
+        scissorKnown = false;
+        matrixKnown = false;
+    }
+
+    /**
+     * Forgets the known OpenGL state except for the viewport and model view
+     * matrix. For use after code that saves and restores those itself, such as
+     * TextRenderer, has run.
+     */
+    final void invalidate() {
+        for (int i = 0; i < caps.length; i++) {
+            caps[i] = UNKNOWN;
+        }
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = UNKNOWN;
+        }
+        blendSrc = UNKNOWN;
+        blendDst = UNKNOWN;
+        alphaFunc = UNKNOWN;
+        texEnvMode = UNKNOWN;
+        texture = UNKNOWN;
+        arrayBuffer = UNKNOWN;
+        elementBuffer = UNKNOWN;
+        colorKnown = false;
+    }
+
+    /**
+     * Starts a new frame, the counts of the frame that just ended become
+     * available through getIssued() and getSkipped().
+     * @param gl the GL to issue calls to for this frame
+     */
+    final void frame(final GL gl) {
+        this.gl = gl;
+        lastIssued = issued;
+        lastSkipped = skipped;
+        issued = 0;
+        skipped = 0;
+        lastSubmitted = submitted;
+        lastCulled = culled;
+        submitted = 0;
+        culled = 0;
+    }
+
+    /**
+     * Gets the number of state changes sent to OpenGL in the last frame.
+     * @return the number of state changes sent to OpenGL in the last frame
+     */
+    final int getIssued() {
+        return lastIssued;
+    }
+
+    /**
+     * Gets the number of state changes that were not sent to OpenGL in the
+     * last frame because they would not have changed anything.
+     * @return the number of state changes skipped in the last frame
+     */
+    final int getSkipped() {
+        return lastSkipped;
+    }
+
+    /**
+     * Gets the number of primitives drawn in the last frame.
+     * @return the number of primitives drawn in the last frame
+     */
+    final int getSubmitted() {
+        return lastSubmitted;
+    }
+
+    /**
+     * Gets the number of primitives that were not drawn in the last frame
+     * because they were outside the clip.
+     * @return the number of primitives culled in the last frame
+     */
+    final int getCulled() {
+        return lastCulled;
+    }
+
+    /**
+     * Enables the given OpenGL capability.
+     * @param cap the capability to enable
+     */
+    final void enable(final int cap) {
+        final int i = capSlot(cap);
+        if (i != UNKNOWN && caps[i] == TRUE) {
+            skipped++;
+            return;
+        }
+        gl.glEnable(cap);
+        issued++;
+        if (i != UNKNOWN) {
+            caps[i] = TRUE;
+        }
+    }
+
+    /**
+     * Disables the given OpenGL capability.
+     * @param cap the capability to disable
+     */
+    final void disable(final int cap) {
+        final int i = capSlot(cap);
+        if (i != UNKNOWN && caps[i] == FALSE) {
+            skipped++;
+            return;
+        }
+        gl.glDisable(cap);
+        issued++;
+        if (i != UNKNOWN) {
+            caps[i] = FALSE;
+        }
+    }
+
+    /**
+     * Enables the given client side array.
+     * @param array the array to enable
+     */
+    final void enableClientState(final int array) {
+        final int i = arraySlot(array);
+        if (arrays[i] == TRUE) {
+            skipped++;
+            return;
+        }
+        gl.glEnableClientState(array);
+        issued++;
+        arrays[i] = TRUE;
+    }
+
+    /**
+     * Disables the given client side array.
+     * @param array the array to disable
+     */
+    final void disableClientState(final int array) {
+        final int i = arraySlot(array);
+        if (arrays[i] == FALSE) {
+            skipped++;
+            return;
+        }
+        gl.glDisableClientState(array);
+        issued++;
+        arrays[i] = FALSE;
+    }
+
+    /**
+     * Sets the blend function. While drawing into a CanvasLayer the given
+     * factors only apply to color, alpha is blended with GL_ONE and
+     * GL_ONE_MINUS_SRC_ALPHA so that the layer holds the coverage of what was
+     * drawn rather than its square.
+     * @param src the source factor
+     * @param dst the destination factor
+     */
+    final void blendFunc(final int src, final int dst) {
+        if (blendSrc == src && blendDst == dst && blendForLayer == layerBlending) {
+            skipped++;
+            return;
+        }
+        if (layerBlending) {
+            gl.glBlendFuncSeparate(src, dst, GL.GL_ONE, GL.GL_ONE_MINUS_SRC_ALPHA);
+        } else {
+            gl.glBlendFunc(src, dst);
+        }
+        issued++;
+        blendSrc = src;
+        blendDst = dst;
+        blendForLayer = layerBlending;
+    }
+
+    /**
+     * Sets whether blend functions set from now on are for drawing into a
+     * CanvasLayer, requires glBlendFuncSeparate.
+     * @param layer true while drawing into a CanvasLayer, false otherwise
+     */
+    final void layerBlending(final boolean layer) {
+        layerBlending = layer;
+    }
+
+    /**
+     * Sets the alpha test function.
+     * @param func the comparison function
+     * @param ref the reference value
+     */
+    final void alphaFunc(final int func, final float ref) {
+        if (alphaFunc == func && alphaRef == ref) {
+            skipped++;
+            return;
+        }
+        gl.glAlphaFunc(func, ref);
+        issued++;
+        alphaFunc = func;
+        alphaRef = ref;
+    }
+
+    /**
+     * Sets the texture environment mode.
+     * @param mode the texture environment mode, such as GL_REPLACE or GL_MODULATE
+     */
+    final void texEnvMode(final int mode) {
+        if (texEnvMode == mode) {
+            skipped++;
+            return;
+        }
+        gl.glTexEnvi(GL.GL_TEXTURE_ENV, GL.GL_TEXTURE_ENV_MODE, mode);
+        issued++;
+        texEnvMode = mode;
+    }
+
+    /**
+     * Binds the given 2D texture.
+     * @param texture the OpenGL name of the texture
+     */
+    final void bindTexture(final int texture) {
+        if (this.texture == texture) {
+            skipped++;
+            return;
+        }
+        gl.glBindTexture(GL.GL_TEXTURE_2D, texture);
+        issued++;
+        this.texture = texture;
+    }
+
+    /**
+     * Forgets the texture binding, for use after a texture has been bound
+     * without going through this object.
+     */
+    final void forgetTexture() {
+        texture = UNKNOWN;
+    }
+
+    /**
+     * Forgets the current color, for use after drawing with a color array,
+     * which leaves the current color undefined.
+     */
+    final void forgetColor() {
+        colorKnown = false;
+    }
+
+    /**
+     * Binds the given vertex buffer object to GL_ARRAY_BUFFER.
+     * @param buffer the OpenGL name of the buffer, 0 to unbind
+     */
+    final void bindArrayBuffer(final int buffer) {
+        if (arrayBuffer == buffer) {
+            skipped++;
+            return;
+        }
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, buffer);
+        issued++;
+        arrayBuffer = buffer;
+    }
+
+    /**
+     * Binds the given buffer object to GL_ELEMENT_ARRAY_BUFFER.
+     * @param buffer the OpenGL name of the buffer, 0 to unbind
+     */
+    final void bindElementBuffer(final int buffer) {
+        if (elementBuffer == buffer) {
+            skipped++;
+            return;
+        }
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, buffer);
+        issued++;
+        elementBuffer = buffer;
+    }
+
+    /**
+     * Unbinds any vertex buffer object bound through this object, so that
+     * code drawing from client memory may run.
+     */
+    final void unbindArrayBuffer() {
+        if (arrayBuffer == 0 || arrayBuffer == UNKNOWN) {
+            skipped++;
+            return;
+        }
+        bindArrayBuffer(0);
+    }
+
+    /**
+     * Sets the current color, used where there is no color array.
+     * @param rgba the color as kept by Color
+     */
+    final void color(final int rgba) {
+        if (colorKnown && color == rgba) {
+            skipped++;
+            return;
+        }
+        gl.glColor4ub((byte) (rgba >>> 24), (byte) (rgba >>> 16), (byte) (rgba >>> 8), (byte) rgba);
+        issued++;
+        colorKnown = true;
+        color = rgba;
+    }
+
+    /**
+     * Sets the viewport.
+     * @param x the x coordinate of the lower left corner
+     * @param y the y coordinate of the lower left corner
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     */
+    final void viewport(final int x, final int y, final int width, final int height) {
+        if (viewportKnown && viewportX == x && viewportY == y
+                && viewportWidth == width && viewportHeight == height) {
+            skipped++;
+            return;
+        }
+        gl.glViewport(x, y, width, height);
+        issued++;
+        viewportKnown = true;
+        viewportX = x;
+        viewportY = y;
+        viewportWidth = width;
+        viewportHeight = height;
+    }
+
+    /**
+     * Sets the scissor box.
+     * @param x the x coordinate of the lower left corner
+     * @param y the y coordinate of the lower left corner
+     * @param width the width of the scissor box
+     * @param height the height of the scissor box
+     */
+    final void scissor(final int x, final int y, final int width, final int height) {
+        if (scissorKnown && scissorX == x && scissorY == y
+                && scissorWidth == width && scissorHeight == height) {
+            skipped++;
+            return;
+        }
+        gl.glScissor(x, y, width, height);
+        issued++;
+        scissorKnown = true;
+        scissorX = x;
+        scissorY = y;
+        scissorWidth = width;
+        scissorHeight = height;
+    }
+
+    /**
+     * Loads an orthographic projection of the given size with the origin at
+     * the top left corner and no translation.
+     * @param width the width of the projection
+     * @param height the height of the projection
+     */
+    final void ortho(final int width, final int height) {
+        if (matrixKnown && orthoWidth == width && orthoHeight == height
+                && translateX == 0 && translateY == 0) {
+            skipped++;
+            return;
+        }
+        gl.glLoadIdentity();
+        gl.glOrtho(0.0f, width, height, 0.0f, -1.0f, 1.0f);
+        issued++;
+        matrixKnown = true;
+        orthoWidth = width;
+        orthoHeight = height;
+        translateX = 0;
+        translateY = 0;
+    }
+
+    /**
+     * Loads an orthographic projection of the given size with the origin at
+     * the top left corner moved by the given translation. If a projection of
+     * that size is already loaded only the translation is changed.
+     * @param width the width of the projection
+     * @param height the height of the projection
+     * @param x the x translation
+     * @param y the y translation
+     */
+    final void ortho(final int width, final int height, final int x, final int y) {
+        if (!matrixKnown || orthoWidth != width || orthoHeight != height) {
+            ortho(width, height);
+        }
+        translate(x - translateX, y - translateY);
+    }
+
+    /**
+     * Moves the point of origin by the given amount.
+     * @param x the x translation
+     * @param y the y translation
+     */
+    final void translate(final int x, final int y) {
+        if (x == 0 && y == 0) {
+            skipped++;
+            return;
+        }
+        gl.glTranslated(x, y, 0);
+        issued++;
+        translateX += x;
+        translateY += y;
+    }
+
+    /**
+     * Gets the slot of the given capability.
+     * @param cap the capability
+     * @return the slot of the given capability, UNKNOWN if it is not tracked
+     */
+    private static int capSlot(final int cap) {
+        for (int i = 0; i < CAPS.length; i++) {
+            if (CAPS[i] == cap) {
+                return i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Gets the slot of the given client side array.
+     * @param array the client side array
+     * @return the slot of the given client side array
+     */
+    private static int arraySlot(final int array) {
+        for (int i = 0; i < ARRAYS.length; i++) {
+            if (ARRAYS[i] == array) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Untracked client state: " + array);
+    }
+}
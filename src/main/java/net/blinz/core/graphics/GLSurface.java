@@ -0,0 +1,266 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.j2d.TextRenderer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+import net.blinz.core.util.Bounds;
+
+/**
+ * Surface that draws through OpenGL, batching sprites and geometry and
+ * drawing text with each Font's TextRenderer for the current context.
+ * @author Blinz Project
+ */
+final class GLSurface implements Surface {
+
+    private GLState state;
+    /**
+     * Bounds of the context in the window, the y coordinate being that of its
+     * lower edge measured from the bottom of the window.
+     */
+    private final Bounds context = new Bounds();
+    /**
+     * The current viewport's clip, relative to the top left corner of the context.
+     */
+    private final Bounds clip = new Bounds();
+    private boolean scissorClipping = false;
+    private final SpriteBatch sprites = new SpriteBatch();
+    private final GeometryBatch geometry = new GeometryBatch();
+    /**
+     * Strings waiting to be drawn with their fonts, locations and colors, text
+     * is drawn after everything else in the current viewport.
+     */
+    private String[] queuedStrings = new String[16];
+    private FontStub[] queuedStubs = new FontStub[16];
+    private int[] queuedLocations = new int[32];
+    private float[] queuedColors = new float[64];
+    private int queued = 0;
+    /**
+     * The fonts of the queued Strings, each once in the order first queued.
+     */
+    private final ArrayList<FontStub> queuedFonts = new ArrayList<FontStub>();
+
+    /**
+     * Sets the GL context to draw with.
+     * @param state the GLState of the context to draw with
+     */
+    final void setState(final GLState state) {
+        this.state = state;
+    }
+
+    @Override
+    public final void begin(final Bounds context) {
+        this.context.setBounds(context);
+    }
+
+    @Override
+    public final void viewport(final Bounds clip, final Bounds visible, final boolean clipVisible,
+            final int originX, final int originY, final int translateX, final int translateY,
+            final boolean scissorClipping) {
+        this.clip.setBounds(clip);
+        this.scissorClipping = scissorClipping;
+        if (clipVisible) {
+            state.enable(GL.GL_SCISSOR_TEST);
+            state.scissor(context.getX() + visible.x, glY(visible.y, visible.height),
+                    visible.width, visible.height);
+        } else {
+            state.disable(GL.GL_SCISSOR_TEST);
+        }
+        if (scissorClipping) {
+            state.viewport(context.getX(), context.getY(), context.getWidth(), context.getHeight());
+            state.ortho(context.getWidth(), context.getHeight(),
+                    originX + translateX, originY + translateY);
+        } else {
+            state.viewport(context.getX() + clip.x, glY(clip.y, clip.height), clip.width, clip.height);
+            if (clip.width > 0 && clip.height > 0) {
+                state.ortho(clip.width, clip.height,
+                        originX - clip.x + translateX, originY - clip.y + translateY);
+            }
+        }
+    }
+
+    @Override
+    public final void translate(final int x, final int y) {
+        flush();
+        state.translate(x, y);
+    }
+
+    @Override
+    public final void setColor(final Color color) {
+        geometry.setColor(color.rgba);
+    }
+
+    @Override
+    public final void setTint(final Color tint) {
+        sprites.setTint(tint.rgba);
+    }
+
+    @Override
+    public final void count(final boolean visible) {
+        if (visible) {
+            state.submitted++;
+        } else {
+            state.culled++;
+        }
+    }
+
+    @Override
+    public final void fillRect(final int x1, final int y1, final int x2, final int y2) {
+        sprites.flush(state);
+        geometry.fillRect(state, x1, y1, x2, y2);
+    }
+
+    @Override
+    public final void drawRect(final int x1, final int y1, final int x2, final int y2) {
+        sprites.flush(state);
+        geometry.drawRect(state, x1, y1, x2, y2);
+    }
+
+    @Override
+    public final void drawLine(final int x1, final int y1, final int x2, final int y2) {
+        sprites.flush(state);
+        geometry.line(state, x1, y1, x2, y2);
+    }
+
+    @Override
+    public final void fillPolygon(final Polygon polygon) {
+        sprites.flush(state);
+        geometry.fillMesh(state, polygon.getMesh());
+    }
+
+    @Override
+    public final void fillPolygon(final int[] coords, final int offset, final int points,
+            final int[] indices, final int indexOffset, final int indexCount) {
+        sprites.flush(state);
+        geometry.fillTriangles(state, coords, offset, indices, indexOffset, indexCount);
+    }
+
+    @Override
+    public final void drawPolygon(final int[] coords, final int offset, final int points) {
+        sprites.flush(state);
+        geometry.drawPolygon(state, coords, offset, points);
+    }
+
+    @Override
+    public final void drawImage(final ImageStub stub, final int x1, final int y1, final int x2, final int y2,
+            final int sx1, final int sy1, final int sx2, final int sy2) {
+        final int texture = stub.getTextureObject(state);
+        geometry.flush(state);
+        final int width = stub.getWidth();
+        final int height = stub.getHeight();
+        if (sx1 == 0 && sy1 == 0 && sx2 == width && sy2 == height) {
+            sprites.add(state, texture, stub.left, stub.top, stub.right, stub.bottom,
+                    x1, y1, x2, y2);
+            return;
+        }
+        //the texture may be flipped or hold other images, so map through the image's own coordinates
+        final float s = (stub.right - stub.left) / width;
+        final float t = (stub.bottom - stub.top) / height;
+        sprites.add(state, texture, stub.left + s * sx1, stub.top + t * sy1,
+                stub.left + s * sx2, stub.top + t * sy2, x1, y1, x2, y2);
+    }
+
+    @Override
+    public final void drawString(final String string, final int x, final int y, final Font font, final Color color) {
+        final int offsetX = scissorClipping ? clip.x : 0;
+        final int offsetY = scissorClipping ? clip.y : 0;
+        if (queued == queuedStrings.length) {
+            queuedStrings = Arrays.copyOf(queuedStrings, queued * 2);
+            queuedStubs = Arrays.copyOf(queuedStubs, queued * 2);
+            queuedLocations = Arrays.copyOf(queuedLocations, queued * 4);
+            queuedColors = Arrays.copyOf(queuedColors, queued * 8);
+        }
+        queuedStrings[queued] = string;
+        queuedStubs[queued] = font.stub;
+        queuedLocations[queued * 2] = x + offsetX;
+        queuedLocations[queued * 2 + 1] = textHeight() - (y + offsetY) - font.getSize();
+        queuedColors[queued * 4] = color.getRedf();
+        queuedColors[queued * 4 + 1] = color.getGreenf();
+        queuedColors[queued * 4 + 2] = color.getBluef();
+        queuedColors[queued * 4 + 3] = color.getAlphaf();
+        queued++;
+        if (!queuedFonts.contains(font.stub)) {
+            queuedFonts.add(font.stub);
+        }
+    }
+
+    @Override
+    public final void flush() {
+        sprites.flush(state);
+        geometry.flush(state);
+    }
+
+    @Override
+    public final void flushText() {
+        flush();
+        if (queuedFonts.isEmpty()) {
+            return;
+        }
+        state.unbindArrayBuffer();
+        state.disableClientState(GL.GL_COLOR_ARRAY);
+        final int width = scissorClipping ? context.getWidth() : clip.width;
+        final int height = textHeight();
+        final GLContext current = GLContext.getCurrent();
+        for (int f = 0; f < queuedFonts.size(); f++) {
+            final FontStub stub = queuedFonts.get(f);
+            final TextRenderer renderer = stub.getRenderer(current);
+            //another thread may be drawing with the renderer in a shared context
+            synchronized (renderer) {
+                renderer.beginRendering(width, height);
+                for (int i = 0; i < queued; i++) {
+                    if (queuedStubs[i] == stub) {
+                        renderer.setColor(queuedColors[i * 4], queuedColors[i * 4 + 1],
+                                queuedColors[i * 4 + 2], queuedColors[i * 4 + 3]);
+                        renderer.draw(queuedStrings[i], queuedLocations[i * 2], queuedLocations[i * 2 + 1]);
+                    }
+                }
+                renderer.endRendering();
+            }
+            if (state.counter != null) {
+                state.counter.count(GLCallStats.TEXT_CYCLES);
+            }
+        }
+        Arrays.fill(queuedStrings, 0, queued, null);
+        Arrays.fill(queuedStubs, 0, queued, null);
+        queued = 0;
+        queuedFonts.clear();
+        state.invalidate();
+    }
+
+    /**
+     * Converts the y coordinate of an area in the context to the window
+     * coordinates used by OpenGL, which places the origin at the lower left
+     * corner.
+     * @param y the y coordinate of the top of the area within the context
+     * @param height the height of the area
+     * @return the y coordinate of the bottom of the area in window coordinates
+     */
+    private int glY(final int y, final int height) {
+        return context.getY() + context.getHeight() - y - height;
+    }
+
+    /**
+     * Gets the height of the area text is currently laid out in.
+     * @return the height of the area text is currently laid out in
+     */
+    private int textHeight() {
+        return scissorClipping ? context.getHeight() : clip.height;
+    }
+}
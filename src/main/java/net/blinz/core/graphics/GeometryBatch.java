@@ -0,0 +1,197 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.BufferUtil;
+import javax.media.opengl.GL;
+
+/**
+ * Collects untextured triangles and lines so that consecutive primitives of the
+ * same kind are submitted to OpenGL in a single draw call.
+ * @author Blinz Project
+ */
+final class GeometryBatch extends VertexBatch {
+
+    /**
+     * Number of vertices that fit in the batch before it is flushed.
+     */
+    private static final int CAPACITY = 3 * 1024;
+    /**
+     * x, y, rgba
+     */
+    private static final int STRIDE = 2 * BufferUtil.SIZEOF_FLOAT + 4;
+    /**
+     * The color of the primitives being added, as kept by Color.
+     */
+    private int rgba = 0x000000ff;
+    /**
+     * rgba as written to vertices.
+     */
+    private int color = vertexColor(rgba);
+
+    /**
+     * Constructor
+     */
+    GeometryBatch() {
+        super(CAPACITY, STRIDE, NONE, 2 * BufferUtil.SIZEOF_FLOAT);
+    }
+
+    /**
+     * Sets the color of the primitives added after this call. Colors are
+     * stored with each vertex, so this never flushes the batch.
+     * @param rgba the color as kept by Color
+     */
+    final void setColor(final int rgba) {
+        this.rgba = rgba;
+        color = vertexColor(rgba);
+    }
+
+    /**
+     * Adds a filled rectangle to the batch.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     */
+    final void fillRect(final GLState state, final int x1, final int y1, final int x2, final int y2) {
+        reserve(state, GL.GL_TRIANGLES, 6);
+        vertex(x1, y1);
+        vertex(x2, y1);
+        vertex(x2, y2);
+        vertex(x2, y2);
+        vertex(x1, y2);
+        vertex(x1, y1);
+    }
+
+    /**
+     * Adds a filled triangle to the batch.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param x1 the x coordinate of the first point
+     * @param y1 the y coordinate of the first point
+     * @param x2 the x coordinate of the second point
+     * @param y2 the y coordinate of the second point
+     * @param x3 the x coordinate of the third point
+     * @param y3 the y coordinate of the third point
+     */
+    final void fillTriangle(final GLState state, final int x1, final int y1, final int x2, final int y2,
+            final int x3, final int y3) {
+        reserve(state, GL.GL_TRIANGLES, 3);
+        vertex(x1, y1);
+        vertex(x2, y2);
+        vertex(x3, y3);
+    }
+
+    /**
+     * Adds a line segment to the batch.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param x1 the x coordinate of the start of the line
+     * @param y1 the y coordinate of the start of the line
+     * @param x2 the x coordinate of the end of the line
+     * @param y2 the y coordinate of the end of the line
+     */
+    final void line(final GLState state, final int x1, final int y1, final int x2, final int y2) {
+        reserve(state, GL.GL_LINES, 2);
+        vertex(x1, y1);
+        vertex(x2, y2);
+    }
+
+    /**
+     * Adds the outline of a rectangle to the batch.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     */
+    final void drawRect(final GLState state, final int x1, final int y1, final int x2, final int y2) {
+        reserve(state, GL.GL_LINES, 8);
+        vertex(x1, y1);
+        vertex(x2, y1);
+        vertex(x2, y1);
+        vertex(x2, y2);
+        vertex(x2, y2);
+        vertex(x1, y2);
+        vertex(x1, y2);
+        vertex(x1, y1);
+    }
+
+    /**
+     * Draws the triangulation of a Polygon from its own buffers.
+     * @param state the GL state to draw with
+     * @param mesh the PolygonMesh to draw
+     */
+    final void fillMesh(final GLState state, final PolygonMesh mesh) {
+        flush(state);
+        beginState(state);
+        state.disableClientState(GL.GL_COLOR_ARRAY);
+        state.color(rgba);
+        mesh.draw(state);
+    }
+
+    /**
+     * Adds an already triangulated polygon held in the given coordinate array
+     * to the batch.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param indices array holding the indices of the points of each triangle
+     * @param indexOffset index of the first index
+     * @param indexCount the number of indices
+     */
+    final void fillTriangles(final GLState state, final int[] coords, final int offset,
+            final int[] indices, final int indexOffset, final int indexCount) {
+        for (int i = indexOffset; i < indexOffset + indexCount; i += 3) {
+            final int a = offset + indices[i] * 2;
+            final int b = offset + indices[i + 1] * 2;
+            final int c = offset + indices[i + 2] * 2;
+            fillTriangle(state, coords[a], coords[a + 1],
+                    coords[b], coords[b + 1], coords[c], coords[c + 1]);
+        }
+    }
+
+    /**
+     * Adds the outline of the polygon held in the given coordinate array to the
+     * batch, from the first point to the last.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points in the polygon
+     */
+    final void drawPolygon(final GLState state, final int[] coords, final int offset, final int points) {
+        for (int i = 1; i < points; i++) {
+            final int a = offset + (i - 1) * 2;
+            line(state, coords[a], coords[a + 1], coords[a + 2], coords[a + 3]);
+        }
+    }
+
+    @Override
+    final void beginState(final GLState state) {
+        state.disable(GL.GL_TEXTURE_2D);
+        state.enable(GL.GL_BLEND);
+        state.blendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Writes a vertex to the batch, room must already have been reserved.
+     * @param x the x coordinate of the vertex
+     * @param y the y coordinate of the vertex
+     */
+    private void vertex(final int x, final int y) {
+        vertices.putFloat(x).putFloat(y).putInt(color);
+    }
+}
@@ -16,12 +16,6 @@
  */
 package net.blinz.core.graphics;
 
-import com.sun.opengl.util.j2d.TextRenderer;
-import com.sun.opengl.util.texture.Texture;
-import com.sun.opengl.util.texture.TextureCoords;
-import java.util.ArrayList;
-import javax.media.opengl.GL;
-import javax.media.opengl.GLAutoDrawable;
 import net.blinz.core.util.Position;
 import net.blinz.core.util.Bounds;
 import net.blinz.core.util.Size;
@@ -32,13 +26,56 @@ import net.blinz.core.util.Size;
  */
 public class Graphics {
 
-    private final static ArrayList<Viewport> excessViewports = new ArrayList<Viewport>();
-    private boolean viewPortOn = false;
-    private Viewport viewport;
     private final Bounds screenBounds = new Bounds();
+    /**
+     * The stack of entered viewports, level 0 being the whole context. For
+     * each level, the origin is the requested top left corner and the clip is
+     * the part of it within its parent, both relative to the context's top
+     * left corner. The saved translation is that of the level before the next
+     * one was entered.
+     */
+    private int[] originX = new int[8], originY = new int[8];
+    private int[] clipX = new int[8], clipY = new int[8];
+    private int[] clipWidth = new int[8], clipHeight = new int[8];
+    private int[] savedX = new int[8], savedY = new int[8];
+    private int depth = 0;
+    /**
+     * Translation applied with translate(x, y) in the current viewport.
+     */
+    private int translateX, translateY;
+    /**
+     * The clip of the current viewport in the current drawing coordinates,
+     * primitives entirely outside of it are not drawn.
+     */
+    private final Bounds clip = new Bounds();
+    /**
+     * The part of the current viewport being drawn, relative to the top left
+     * corner of the context.
+     */
+    private final Bounds visible = new Bounds();
+    /**
+     * The clip of the current viewport relative to the top left corner of the
+     * context, passed to the Surface.
+     */
+    private final Bounds level = new Bounds();
+    /**
+     * The part of the context being redrawn when partial is set, relative to
+     * its top left corner.
+     */
+    private final Bounds region = new Bounds();
+    private boolean partial = false;
+    private boolean scissorClipping = false;
     private final Color color = new Color();
+    /**
+     * Color Images are multiplied by.
+     */
+    private final Color tint = new Color(127, 127, 127, 127);
     private Font font;
-    private GL gl;
+    /**
+     * The Surface being drawn on, null until the first frame.
+     */
+    private Surface surface;
+    private final GLSurface glSurface = new GLSurface();
 
     /**
      * Constructor
@@ -53,7 +90,10 @@ public class Graphics {
      * @param y the y coordinate of the translation
      */
     public final void translate(final int x, final int y) {
-        gl.glTranslated(x, y, 0);
+        translateX += x;
+        translateY += y;
+        surface.translate(x, y);
+        updateClip();
     }
 
     /**
@@ -65,7 +105,10 @@ public class Graphics {
      * @param y2 the y2 coordinate of the translation
      */
     public final void fillRect(final int x1, final int y1, final int x2, final int y2) {
-        gl.glRecti(x1, y1, x2, y2);
+        if (!visible(x1, y1, x2, y2)) {
+            return;
+        }
+        surface.fillRect(x1, y1, x2, y2);
     }
 
     /**
@@ -74,13 +117,10 @@ public class Graphics {
      * @param polygon the Polygon to be filled 
      */
     public final void fillPolygon(final Polygon polygon) {
-        gl.glBegin(GL.GL_POLYGON);
-        {
-            for (int i = 0; i < polygon.size(); i++) {
-                gl.glVertex2i(polygon.get(i).x, polygon.get(i).y);
-            }
+        if (!count(polygon.intersects(clip))) {
+            return;
         }
-        gl.glEnd();
+        surface.fillPolygon(polygon);
     }
 
     /**
@@ -91,12 +131,10 @@ public class Graphics {
      * @param y2 the y2 coordinate of the line
      */
     public final void drawLine(final int x1, final int y1, final int x2, final int y2) {
-        gl.glBegin(GL.GL_LINES);
-        {
-            gl.glVertex2i(x1, y1);
-            gl.glVertex2i(x2, y2);
+        if (!visible(x1, y1, x2, y2)) {
+            return;
         }
-        gl.glEnd();
+        surface.drawLine(x1, y1, x2, y2);
     }
 
     /**
@@ -117,16 +155,10 @@ public class Graphics {
      * @param y2 the y2 coordinate of the rectangle
      */
     public final void drawRect(final int x1, final int y1, final int x2, final int y2) {
-        gl.glBegin(GL.GL_LINE_STRIP);
-        {
-            gl.glVertex2i(x1, y1);
-            gl.glVertex2i(x2, y1);
-            gl.glVertex2i(x2, y2);
-            gl.glVertex2i(x1, y2);
-            gl.glVertex2i(x1, y1);
+        if (!visible(x1, y1, x2, y2)) {
+            return;
         }
-        gl.glEnd();
-
+        surface.drawRect(x1, y1, x2, y2);
     }
 
     /**
@@ -135,11 +167,12 @@ public class Graphics {
      * @param polygon the Polygon to be filled
      */
     public final void drawPolygon(final Polygon polygon) {
-        gl.glBegin(GL.GL_LINE_STRIP);
-        for (int i = 0; i < polygon.size(); i++) {
-            gl.glVertex2i(polygon.get(i).x, polygon.get(i).y);
+        if (!count(polygon.intersects(clip))) {
+            return;
+        }
+        synchronized (polygon) {
+            surface.drawPolygon(polygon.packedPoints(), 0, polygon.size());
         }
-        gl.glEnd();
     }
 
     /**
@@ -147,18 +180,64 @@ public class Graphics {
      * @param color a Color object representing the color with which primites will be drawn
      */
     public final void setColor(final Color color) {
-        setColor(color.red, color.green, color.blue);
+        this.color.setColor(color);
+        if (surface != null) {
+            surface.setColor(this.color);
+        }
     }
 
     /**
-     * Sets the drawing color to the mix of the provided RGB values.
+     * Sets the drawing color to the opaque mix of the provided RGB values.
      * @param red the red in the RGB
      * @param green the green in the RGB
      * @param blue the blue in the RGB
      */
     public final void setColor(final int red, final int green, final int blue) {
-        color.setColor(red, green, blue);
-        gl.glColor3b(color.red, color.green, color.blue);
+        setColor(red, green, blue, 127);
+    }
+
+    /**
+     * Sets the drawing color to the mix of the provided RGBA values,
+     * primitives and text drawn with an alpha below 127 are translucent.
+     * @param red the red in the RGBA
+     * @param green the green in the RGBA
+     * @param blue the blue in the RGBA
+     * @param alpha the alpha in the RGBA, 0 being transparent and 127 opaque
+     */
+    public final void setColor(final int red, final int green, final int blue, final int alpha) {
+        color.setColor(red, green, blue, alpha);
+        if (surface != null) {
+            surface.setColor(color);
+        }
+    }
+
+    /**
+     * Sets the color Images and Animations drawn after this call are
+     * multiplied by. Opaque white, the default, draws them as they are, a lower
+     * alpha makes them translucent. Changing the tint does not break up
+     * batches of Images.
+     * @param tint the Color to multiply Images by
+     */
+    public final void setTint(final Color tint) {
+        this.tint.setColor(tint);
+        if (surface != null) {
+            surface.setTint(this.tint);
+        }
+    }
+
+    /**
+     * Sets the color Images and Animations drawn after this call are
+     * multiplied by to the mix of the provided RGBA values.
+     * @param red the red in the RGBA
+     * @param green the green in the RGBA
+     * @param blue the blue in the RGBA
+     * @param alpha the alpha in the RGBA, 0 being transparent and 127 opaque
+     */
+    public final void setTint(final int red, final int green, final int blue, final int alpha) {
+        tint.setColor(red, green, blue, alpha);
+        if (surface != null) {
+            surface.setTint(tint);
+        }
     }
 
     /**
@@ -174,7 +253,11 @@ public class Graphics {
      * @param y2 the y2 coordinate of the Animation
      */
     public final void drawAnimation(final Animation animation, final int x1, final int y1, final int x2, final int y2) {
-        drawImage(animation.getImage(), x1, y1, x2, y2);
+        final Animation.Frame frame = animation.getFrame();
+        if (frame == null) {
+            return;
+        }
+        drawImage(frame.image, x1, y1, x2, y2, frame.x1, frame.y1, frame.x2, frame.y2);
     }
 
     /**
@@ -187,7 +270,7 @@ public class Graphics {
      * @param bounds the bounds in which to draw the given animation
      */
     public final void drawAnimation(final Animation animation, final Bounds bounds) {
-        drawImage(animation.getImage(), bounds.x, bounds.y, bounds.x2(), bounds.y2());
+        drawAnimation(animation, bounds.x, bounds.y, bounds.x2(), bounds.y2());
     }
 
     /**
@@ -203,7 +286,7 @@ public class Graphics {
      * @param y2 the y2 coordinate of the Animation
      */
     public final void draw(final Animation animation, final int x1, final int y1, final int x2, final int y2) {
-        drawImage(animation.getImage(), x1, y1, x2, y2);
+        drawAnimation(animation, x1, y1, x2, y2);
     }
 
     /**
@@ -216,7 +299,7 @@ public class Graphics {
      * @param bounds the bounds in which to draw the given animation
      */
     public final void draw(final Animation animation, final Bounds bounds) {
-        drawImage(animation.getImage(), bounds.x, bounds.y, bounds.x2(), bounds.y2());
+        drawAnimation(animation, bounds.x, bounds.y, bounds.x2(), bounds.y2());
     }
 
     /**
@@ -230,7 +313,7 @@ public class Graphics {
      * @param loc2 bottom right coordinate of the draw space
      */
     public final void drawAnimation(final Animation animation, final Position loc1, final Position loc2) {
-        drawImage(animation.getImage(), loc1.x, loc1.y, loc2.x, loc2.y);
+        drawAnimation(animation, loc1.x, loc1.y, loc2.x, loc2.y);
     }
 
     /**
@@ -244,7 +327,7 @@ public class Graphics {
      * @param loc2 bottom right coordinate of the draw space
      */
     public final void draw(final Animation animation, final Position loc1, final Position loc2) {
-        drawImage(animation.getImage(), loc1.x, loc1.y, loc2.x, loc2.y);
+        drawAnimation(animation, loc1.x, loc1.y, loc2.x, loc2.y);
     }
 
     /**
@@ -320,47 +403,50 @@ public class Graphics {
      * @param y2 the y2 coordinate of the Animation
      */
     public final void drawImage(final Image image, final int x1, final int y1, final int x2, final int y2) {
-        final Texture texture = image.getImageStub().getTexture();
-        final TextureCoords t = texture.getImageTexCoords();
-        gl.glPushMatrix();
-        gl.glEnable(GL.GL_BLEND);
-        gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
-
-        gl.glEnable(GL.GL_ALPHA_TEST);
-        gl.glAlphaFunc(GL.GL_GREATER, 0);
-
-        gl.glEnable(GL.GL_TEXTURE_2D);
-        gl.glTexEnvf(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_ENV_MODE, GL.GL_REPLACE);
-        gl.glColor3d(1, 1, 1);
-        gl.glBindTexture(GL.GL_TEXTURE_2D, texture.getTextureObject());
-
-        gl.glBegin(GL.GL_QUADS);
-        {
-            //Top Left
-            gl.glTexCoord2f(t.left(), t.top());
-            gl.glVertex3i(x1, y1, 0);
-            //Top Right
-            gl.glTexCoord2f(t.right(), t.top());
-            gl.glVertex3i(x2, y1, 0);
-            //Bottom Right
-            gl.glTexCoord2f(t.right(), t.bottom());
-            gl.glVertex3i(x2, y2, 0);
-            //Bottom Left
-            gl.glTexCoord2f(t.left(), t.bottom());
-            gl.glVertex3i(x1, y2, 0);
+        if (!visible(x1, y1, x2, y2)) {
+            return;
         }
-        gl.glEnd();
-
-        gl.glDisable(GL.GL_TEXTURE_2D);
-        gl.glTexEnvi(GL.GL_TEXTURE_ENV, GL.GL_TEXTURE_ENV_MODE, GL.GL_MODULATE);
-
-        gl.glDisable(GL.GL_ALPHA);
-        gl.glDisable(GL.GL_BLEND);
-
+        final ImageStub stub = image.getImageStub();
+        surface.drawImage(stub, x1, y1, x2, y2, 0, 0, stub.getWidth(), stub.getHeight());
+    }
 
-        gl.glPopMatrix();
+    /**
+     * Draws the given rectangle of the given Image on the screen at the given
+     * coordinates, such as a tile or frame of a sprite sheet. Rectangles of
+     * the same Image are drawn from the same texture, and consecutive ones
+     * in a single batch.
+     *
+     * Note: x1 and y1 refer to the top left corner of the destination, and x2
+     * and y2 refer to the bottom right. The same goes for sx1, sy1, sx2 and sy2
+     * in the Image.
+     * @param image the Image to be drawn
+     * @param x1 the x1 coordinate of the destination
+     * @param y1 the y1 coordinate of the destination
+     * @param x2 the x2 coordinate of the destination
+     * @param y2 the y2 coordinate of the destination
+     * @param sx1 the x1 coordinate of the rectangle in the Image, in pixels
+     * @param sy1 the y1 coordinate of the rectangle in the Image, in pixels
+     * @param sx2 the x2 coordinate of the rectangle in the Image, in pixels
+     * @param sy2 the y2 coordinate of the rectangle in the Image, in pixels
+     */
+    public final void drawImage(final Image image, final int x1, final int y1, final int x2, final int y2,
+            final int sx1, final int sy1, final int sx2, final int sy2) {
+        if (!visible(x1, y1, x2, y2)) {
+            return;
+        }
+        surface.drawImage(image.getImageStub(), x1, y1, x2, y2, sx1, sy1, sx2, sy2);
+    }
 
-        gl.glColor3d(color.red, color.green, color.blue);
+    /**
+     * Draws the given rectangle of the given Image on the screen across the
+     * given bounds.
+     * @param image the Image to be drawn
+     * @param bounds the bounds in which to draw the rectangle
+     * @param source the rectangle in the Image, in pixels
+     */
+    public final void drawImage(final Image image, final Bounds bounds, final Bounds source) {
+        drawImage(image, bounds.x, bounds.y, bounds.x2(), bounds.y2(),
+                source.x, source.y, source.x2(), source.y2());
     }
 
     /**
@@ -403,23 +489,20 @@ public class Graphics {
     /**
      * Draws the specified String with the specified font with the the bottom
      * left corner as the point of origin.
+     *
+     * Text is drawn on top of everything else drawn in the current viewport.
      * @param string the String to be drawn
      * @param x the x coordinate of the String drawn
      * @param y the x coordinate of the String drawn
      * @param font the Font of the String when drawn
      */
-    public final void drawString(final String string, int x, int y, final Font font) {
-        TextRenderer r = font.stub.getRenderer();
-        r.setColor(color.getRedf(), color.getGreenf(), color.getBluef(), 1f);
-        if (viewPortOn) {
-            y = viewport.getHeight() - y;
-            r.beginRendering(viewport.getWidth(), viewport.getHeight());
-        } else {
-            y = screenBounds.getHeight() - y;
-            r.beginRendering(screenBounds.getWidth(), screenBounds.getHeight());
+    public final void drawString(final String string, final int x, final int y, final Font font) {
+        //text is not translated, so test it against the untranslated clip
+        if (!count(Bounds.intersects(x, y, (int) font.getStringWidth(string) + 1, font.getSize() * 2,
+                0, 0, getPaneWidth(), getPaneHeight()))) {
+            return;
         }
-        r.draw(string, x, y - font.getSize());
-        r.endRendering();
+        surface.drawString(string, x, y, font, color);
     }
 
     /**
@@ -462,18 +545,8 @@ public class Graphics {
      * @param y y location that string will be drawn at
      * @param font Font the String will be drawn with
      */
-    public final void draw(final String string, int x, int y, final Font font) {
-        TextRenderer r = font.stub.getRenderer();
-        r.setColor(color.getRedf(), color.getGreenf(), color.getBluef(), 1f);
-        if (viewPortOn) {
-            y = viewport.getHeight() - y;
-            r.beginRendering(viewport.getWidth(), viewport.getHeight());
-        } else {
-            y = screenBounds.getHeight() - y;
-            r.beginRendering(screenBounds.getWidth(), screenBounds.getHeight());
-        }
-        r.draw(string, x, y - font.getSize());
-        r.endRendering();
+    public final void draw(final String string, final int x, final int y, final Font font) {
+        drawString(string, x, y, font);
     }
 
     /**
@@ -556,10 +629,10 @@ public class Graphics {
      * @return the width of the drawing area
      */
     public final int getPaneWidth() {
-        if (viewport != null) {
-            return viewport.getWidth();
+        if (depth == 0) {
+            return screenBounds.getWidth();
         }
-        return screenBounds.getWidth();
+        return clipWidth[depth];
     }
 
     /**
@@ -567,18 +640,18 @@ public class Graphics {
      * @return the height of the drawing area
      */
     public final int getPaneHeight() {
-        if (viewport != null) {
-            return viewport.getHeight();
+        if (depth == 0) {
+            return screenBounds.getHeight();
         }
-        return screenBounds.getHeight();
+        return clipHeight[depth];
     }
 
     /**
      * Sets the bounds within the current screen which things will be drawn,
-     * outside of it everything will be cut off.
+     * outside of it everything will be cut off. Viewports may be nested, the
+     * location of a viewport is relative to the viewport it is entered in.
      *
-     * IMPORTANT: Nesting viewports is not currently supported but may be in the
-     * future, please exit the viewport when you're done.
+     * Please exit the viewport when you're done.
      *
      * @param x the x location of the viewport
      * @param y the y location of the viewport
@@ -586,36 +659,76 @@ public class Graphics {
      * @param height the height of the viewport
      */
     public final void enterViewport(final int x, final int y, final int width, final int height) {
-        final Viewport v = viewport;
-        viewport = fetchViewport();
-        if (v == null) {
-            viewport.parent = screenBounds;
-        } else {
-            viewport.parent = v;
+        flushText();
+        if (depth + 1 == clipX.length) {
+            originX = grow(originX);
+            originY = grow(originY);
+            clipX = grow(clipX);
+            clipY = grow(clipY);
+            clipWidth = grow(clipWidth);
+            clipHeight = grow(clipHeight);
+            savedX = grow(savedX);
+            savedY = grow(savedY);
+        }
+        final int parent = depth;
+        savedX[parent] = translateX;
+        savedY[parent] = translateY;
+        depth++;
+        originX[depth] = originX[parent] + x;
+        originY[depth] = originY[parent] + y;
+        final int x1 = Math.max(originX[depth], clipX[parent]);
+        final int y1 = Math.max(originY[depth], clipY[parent]);
+        final int x2 = Math.min(originX[depth] + width, clipX[parent] + clipWidth[parent]);
+        final int y2 = Math.min(originY[depth] + height, clipY[parent] + clipHeight[parent]);
+        clipX[depth] = x1;
+        clipY[depth] = y1;
+        clipWidth[depth] = Math.max(0, x2 - x1);
+        clipHeight[depth] = Math.max(0, y2 - y1);
+        translateX = 0;
+        translateY = 0;
+        applyViewport();
+    }
+
+    /**
+     * Leaves the current viewport and returns the scope to the viewport it
+     * was entered in, or the whole screen.
+     */
+    public final void exitViewport() {
+        if (depth == 0) {
+            return;
         }
-        viewport.setViewport(x, y, width, height);
-        viewport.fixViewport();
-        gl.glViewport(viewport.getX(), viewport.getY(),
-                viewport.getWidth(), viewport.getHeight());
-        gl.glLoadIdentity();
-        gl.glOrtho(0.0f, viewport.getWidth(), viewport.getHeight(),
-                0.0f, -1.0f, 1.0f);
-        gl.glTranslated(viewport.getXTranslation(), viewport.getYTranslation(), 0);
-        viewPortOn = true;
+        flushText();
+        depth--;
+        translateX = savedX[depth];
+        translateY = savedY[depth];
+        applyViewport();
     }
 
     /**
-     * Leaves the viewport and returns the scope to the whole screen.
+     * Sets whether viewports clip with the scissor test rather than by
+     * changing the OpenGL viewport and projection. Scissor clipping makes
+     * entering and leaving viewports cheaper as the projection stays loaded.
+     * @param scissorClipping true to clip viewports with the scissor test
      */
-    public final void exitViewport() {
-        excessViewports.add(viewport);
-        if (viewport.parent instanceof Viewport) {
-            viewport = (Viewport) viewport.parent;
-        } else {
-            viewport = null;
-            viewPortOn = false;
+    public final void setScissorClipping(final boolean scissorClipping) {
+        if (this.scissorClipping == scissorClipping) {
+            return;
+        }
+        if (surface != null) {
+            flushText();
         }
-        load();
+        this.scissorClipping = scissorClipping;
+        if (surface != null) {
+            applyViewport();
+        }
+    }
+
+    /**
+     * Indicates whether viewports clip with the scissor test.
+     * @return true if viewports clip with the scissor test, false otherwise
+     */
+    public final boolean getScissorClipping() {
+        return scissorClipping;
     }
 
     /**
@@ -624,57 +737,187 @@ public class Graphics {
      */
     final void setContextBounds(final Bounds bounds) {
         screenBounds.setBounds(bounds);
-        if (gl != null) {
-            load();
+    }
+
+    /**
+     * Sets the part of the context to redraw, everything else is left as it is.
+     * @param region the area to redraw relative to the top left corner of the
+     * context, or null to redraw all of it
+     */
+    final void setRegion(final Bounds region) {
+        partial = region != null;
+        if (partial) {
+            this.region.setBounds(region);
         }
     }
 
     /**
      * Sets the GL context to be used for drawing.
-     * @param drawable the GLAutoDrawable object used to get the lower level drawing utility
+     * @param state the GLState of the context to draw with
+     */
+    final void setContext(final GLState state) {
+        glSurface.setState(state);
+        surface = glSurface;
+    }
+
+    /**
+     * Sets the Surface to be used for drawing.
+     * @param surface the Surface to draw on
+     */
+    final void setSurface(final Surface surface) {
+        this.surface = surface;
+    }
+
+    /**
+     * Fills the polygon held in the given coordinate array, already
+     * triangulated.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points in the polygon
+     * @param indices array holding the indices of the points of each triangle,
+     * relative to the first point
+     * @param indexOffset index of the first index
+     * @param indexCount the number of indices
+     */
+    final void fillPolygon(final int[] coords, final int offset, final int points,
+            final int[] indices, final int indexOffset, final int indexCount) {
+        if (!visible(coords, offset, points)) {
+            return;
+        }
+        surface.fillPolygon(coords, offset, points, indices, indexOffset, indexCount);
+    }
+
+    /**
+     * Draws the outline of the polygon held in the given coordinate array.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points in the polygon
      */
-    final void setContext(final GLAutoDrawable drawable) {
-        gl = drawable.getGL();
+    final void drawPolygon(final int[] coords, final int offset, final int points) {
+        if (!visible(coords, offset, points)) {
+            return;
+        }
+        surface.drawPolygon(coords, offset, points);
     }
 
     /**
-     * Loads this Graphics objects settings to the OpenGL context.
+     * Draws anything that has been batched but not yet sent to OpenGL.
+     */
+    final void flush() {
+        surface.flush();
+    }
+
+    /**
+     * Draws anything that has been batched, then any queued text over it.
+     */
+    final void flushText() {
+        surface.flushText();
+    }
+
+    /**
+     * Loads this Graphics objects settings to the OpenGL context, leaving any
+     * viewports that were not exited.
      */
     final void load() {
-        gl.glLoadIdentity();
-        if (viewPortOn) {
-            viewport.fixViewport();
-
-            gl.glViewport(viewport.getX(), viewport.getY(),
-                    viewport.getWidth(), viewport.getHeight());
-            gl.glOrtho(0.0f, viewport.getWidth(), viewport.getHeight(),
-                    0.0f, -1.0f, 1.0f);
+        depth = 0;
+        translateX = 0;
+        translateY = 0;
+        clipWidth[0] = screenBounds.getWidth();
+        clipHeight[0] = screenBounds.getHeight();
+        surface.begin(screenBounds);
+        surface.setColor(color);
+        surface.setTint(tint);
+        applyViewport();
+    }
+
+    /**
+     * Loads the viewport on top of the stack to the OpenGL context.
+     */
+    private void applyViewport() {
+        final int x = clipX[depth];
+        final int y = clipY[depth];
+        final int width = clipWidth[depth];
+        final int height = clipHeight[depth];
+        level.setBounds(x, y, width, height);
+        if (partial) {
+            final int visibleX = Math.max(x, region.x);
+            final int visibleY = Math.max(y, region.y);
+            visible.setBounds(visibleX, visibleY,
+                    Math.max(0, Math.min(x + width, region.x2()) - visibleX),
+                    Math.max(0, Math.min(y + height, region.y2()) - visibleY));
         } else {
-            gl.glViewport(screenBounds.getX(), screenBounds.getY(),
-                    screenBounds.getWidth(), screenBounds.getHeight());
-            gl.glOrtho(0.0f, screenBounds.getWidth(), screenBounds.getHeight(), 0.0f,
-                    -1.0f, 1.0f);
+            visible.setBounds(level);
         }
-        gl.glColor3b(color.red, color.green, color.blue);
+        updateClip();
+        surface.viewport(level, visible, partial || (scissorClipping && depth != 0),
+                originX[depth], originY[depth], translateX, translateY, scissorClipping);
     }
 
     /**
-     * Cleans out excess data being used, reduces memory use.
+     * Moves the clip to the current drawing coordinates.
      */
-    final void clean() {
-        excessViewports.trimToSize();
-        excessViewports.clear();
+    private void updateClip() {
+        clip.setBounds(visible.x - originX[depth] - translateX, visible.y - originY[depth] - translateY,
+                visible.width, visible.height);
     }
 
     /**
-     * Gets a recycled Viewport object.
-     * @return a Viewport object, reuses old Position objects when possible
+     * Counts a primitive as submitted or culled.
+     * @param visible whether the primitive is within the clip
+     * @return visible
      */
-    private Viewport fetchViewport() {
-        if (excessViewports.isEmpty()) {
-            return new Viewport();
-        } else {
-            return excessViewports.remove(0);
+    private boolean count(final boolean visible) {
+        surface.count(visible);
+        return visible;
+    }
+
+    /**
+     * Tests whether the box with the given corners, edges included, is within
+     * the clip, and counts it.
+     * @param x1 the x coordinate of one corner
+     * @param y1 the y coordinate of one corner
+     * @param x2 the x coordinate of the opposite corner
+     * @param y2 the y coordinate of the opposite corner
+     * @return true if the box is within the clip
+     */
+    private boolean visible(final int x1, final int y1, final int x2, final int y2) {
+        return count(clip.intersects(Math.min(x1, x2), Math.min(y1, y2),
+                Math.abs(x2 - x1) + 1, Math.abs(y2 - y1) + 1));
+    }
+
+    /**
+     * Tests whether the bounding box of the given points is within the clip,
+     * and counts it.
+     * @param coords array holding x, y pairs of the points
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points
+     * @return true if the points' bounding box is within the clip
+     */
+    private boolean visible(final int[] coords, final int offset, final int points) {
+        if (points == 0) {
+            return count(false);
+        }
+        int minX = coords[offset], minY = coords[offset + 1];
+        int maxX = minX, maxY = minY;
+        for (int i = 1; i < points; i++) {
+            final int x = coords[offset + i * 2];
+            final int y = coords[offset + i * 2 + 1];
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
         }
+        return visible(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Doubles the length of the given array.
+     * @param array the array to grow
+     * @return a new array with the contents of the given one
+     */
+    private static int[] grow(final int[] array) {
+        final int[] retval = new int[array.length * 2];
+        System.arraycopy(array, 0, retval, 0, array.length);
+        return retval;
     }
 }
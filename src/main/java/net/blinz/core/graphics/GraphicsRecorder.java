@@ -0,0 +1,322 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import net.blinz.core.util.Bounds;
+import net.blinz.core.util.Position;
+
+/**
+ * Records drawing operations from an application thread for a QueuedCanvas to
+ * perform on the graphics thread. Methods mirror those of Graphics.
+ *
+ * A GraphicsRecorder belongs to one QueuedCanvas and must only be used by one
+ * thread at a time.
+ * @author Blinz Project
+ */
+public final class GraphicsRecorder {
+
+    private CommandBuffer buffer;
+
+    /**
+     * Constructor
+     * @param buffer the CommandBuffer to record to
+     */
+    GraphicsRecorder(final CommandBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Moves the point of origin for drawing over the specified amount.
+     * @param x the x coordinate of the translation
+     * @param y the y coordinate of the translation
+     */
+    public final void translate(final int x, final int y) {
+        buffer.add(CommandBuffer.TRANSLATE, x, y);
+    }
+
+    /**
+     * Sets the drawing color to the color represented by the passed Color object.
+     * @param color a Color object representing the color with which primites will be drawn
+     */
+    public final void setColor(final Color color) {
+        setColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+    }
+
+    /**
+     * Sets the drawing color to the mix of the provided RGB values.
+     * @param red the red in the RGB
+     * @param green the green in the RGB
+     * @param blue the blue in the RGB
+     */
+    public final void setColor(final int red, final int green, final int blue) {
+        setColor(red, green, blue, 127);
+    }
+
+    /**
+     * Sets the drawing color to the mix of the provided RGBA values.
+     * @param red the red in the RGBA
+     * @param green the green in the RGBA
+     * @param blue the blue in the RGBA
+     * @param alpha the alpha in the RGBA, 0 being transparent and 127 opaque
+     */
+    public final void setColor(final int red, final int green, final int blue, final int alpha) {
+        buffer.add(CommandBuffer.SET_COLOR, red, green, blue, alpha);
+    }
+
+    /**
+     * Sets the color Images drawn after this call are multiplied by.
+     * @param tint the Color to multiply Images by
+     */
+    public final void setTint(final Color tint) {
+        setTint(tint.getRed(), tint.getGreen(), tint.getBlue(), tint.getAlpha());
+    }
+
+    /**
+     * Sets the color Images drawn after this call are multiplied by to the
+     * mix of the provided RGBA values.
+     * @param red the red in the RGBA
+     * @param green the green in the RGBA
+     * @param blue the blue in the RGBA
+     * @param alpha the alpha in the RGBA, 0 being transparent and 127 opaque
+     */
+    public final void setTint(final int red, final int green, final int blue, final int alpha) {
+        buffer.add(CommandBuffer.SET_TINT, red, green, blue, alpha);
+    }
+
+    /**
+     * Draws the rectangle with point (x1, y1) representing the top left corner,
+     * and point (x2, y2) representing the bottom right corner.
+     * @param x1 the x1 coordinate of the rectangle
+     * @param y1 the y1 coordinate of the rectangle
+     * @param x2 the x2 coordinate of the rectangle
+     * @param y2 the y2 coordinate of the rectangle
+     */
+    public final void fillRect(final int x1, final int y1, final int x2, final int y2) {
+        buffer.add(CommandBuffer.FILL_RECT, x1, y1, x2, y2);
+    }
+
+    /**
+     * Draws a rectangle, with the bounds of the given Bounds object.
+     * @param bounds the bounds of the rectangle to be drawn
+     */
+    public final void fillRect(final Bounds bounds) {
+        fillRect(bounds.x, bounds.y, bounds.x2(), bounds.y2());
+    }
+
+    /**
+     * Draws the outline of a rectangle with point (x1, y1) representing the top
+     * left corner, and point (x2, y2) representing the bottom right corner.
+     * @param x1 the x1 coordinate of the rectangle
+     * @param y1 the y1 coordinate of the rectangle
+     * @param x2 the x2 coordinate of the rectangle
+     * @param y2 the y2 coordinate of the rectangle
+     */
+    public final void drawRect(final int x1, final int y1, final int x2, final int y2) {
+        buffer.add(CommandBuffer.DRAW_RECT, x1, y1, x2, y2);
+    }
+
+    /**
+     * Draws the outline of a rectangle with the bounds of the given Bounds object.
+     * @param bounds the bounds of the rectangle to be drawn
+     */
+    public final void drawRect(final Bounds bounds) {
+        drawRect(bounds.x, bounds.y, bounds.x2(), bounds.y2());
+    }
+
+    /**
+     * Draws a line from point (x1, y1) to point (x2, y2).
+     * @param x1 the x1 coordinate of the line
+     * @param y1 the y1 coordinate of the line
+     * @param x2 the x2 coordinate of the line
+     * @param y2 the y2 coordinate of the line
+     */
+    public final void drawLine(final int x1, final int y1, final int x2, final int y2) {
+        buffer.add(CommandBuffer.DRAW_LINE, x1, y1, x2, y2);
+    }
+
+    /**
+     * Draws a line from loc1 to loc2.
+     * @param loc1 a Position object representing the starting point of the line
+     * @param loc2 a Position object representing the end of the line
+     */
+    public final void drawLine(final Position loc1, final Position loc2) {
+        drawLine(loc1.x, loc1.y, loc2.x, loc2.y);
+    }
+
+    /**
+     * Fills the given Polygon. The points are copied, so the Polygon may be
+     * changed once this returns.
+     * @param polygon the Polygon to be filled
+     */
+    public final void fillPolygon(final Polygon polygon) {
+        buffer.addPolygon(CommandBuffer.FILL_POLYGON, polygon);
+    }
+
+    /**
+     * Draws the outline of the given Polygon. The points are copied, so the
+     * Polygon may be changed once this returns.
+     * @param polygon the Polygon to be outlined
+     */
+    public final void drawPolygon(final Polygon polygon) {
+        buffer.addPolygon(CommandBuffer.DRAW_POLYGON, polygon);
+    }
+
+    /**
+     * Draws the given Image on the screen at the given coordinates.
+     *
+     * Note: x1 and y1 refer to the top left corner of the image, and x2 and y2
+     * refer to the bottom right.
+     * @param image the Image to be drawn
+     * @param x1 the x1 coordinate of the Image
+     * @param y1 the y1 coordinate of the Image
+     * @param x2 the x2 coordinate of the Image
+     * @param y2 the y2 coordinate of the Image
+     */
+    public final void drawImage(final Image image, final int x1, final int y1, final int x2, final int y2) {
+        buffer.add(CommandBuffer.DRAW_IMAGE, x1, y1, x2, y2);
+        buffer.addObject(image);
+    }
+
+    /**
+     * Draws the given Image on the screen across the given bounds.
+     * @param image the image to draw
+     * @param bounds the bounds in which to draw the image
+     */
+    public final void drawImage(final Image image, final Bounds bounds) {
+        drawImage(image, bounds.x, bounds.y, bounds.x2(), bounds.y2());
+    }
+
+    /**
+     * Draws the given rectangle of the given Image on the screen at the given
+     * coordinates.
+     *
+     * Note: x1 and y1 refer to the top left corner of the destination, and x2
+     * and y2 refer to the bottom right. The same goes for sx1, sy1, sx2 and sy2
+     * in the Image.
+     * @param image the Image to be drawn
+     * @param x1 the x1 coordinate of the destination
+     * @param y1 the y1 coordinate of the destination
+     * @param x2 the x2 coordinate of the destination
+     * @param y2 the y2 coordinate of the destination
+     * @param sx1 the x1 coordinate of the rectangle in the Image, in pixels
+     * @param sy1 the y1 coordinate of the rectangle in the Image, in pixels
+     * @param sx2 the x2 coordinate of the rectangle in the Image, in pixels
+     * @param sy2 the y2 coordinate of the rectangle in the Image, in pixels
+     */
+    public final void drawImage(final Image image, final int x1, final int y1, final int x2, final int y2,
+            final int sx1, final int sy1, final int sx2, final int sy2) {
+        buffer.add(CommandBuffer.DRAW_IMAGE_REGION, x1, y1, x2, y2, sx1, sy1, sx2, sy2);
+        buffer.addObject(image);
+    }
+
+    /**
+     * Draws the given rectangle of the given Image on the screen across the
+     * given bounds.
+     * @param image the Image to be drawn
+     * @param bounds the bounds in which to draw the rectangle
+     * @param source the rectangle in the Image, in pixels
+     */
+    public final void drawImage(final Image image, final Bounds bounds, final Bounds source) {
+        drawImage(image, bounds.x, bounds.y, bounds.x2(), bounds.y2(),
+                source.x, source.y, source.x2(), source.y2());
+    }
+
+    /**
+     * Draws the Image the given Animation is showing at the time of recording.
+     * @param animation the Animation to be drawn
+     * @param x1 the x1 coordinate of the Animation
+     * @param y1 the y1 coordinate of the Animation
+     * @param x2 the x2 coordinate of the Animation
+     * @param y2 the y2 coordinate of the Animation
+     */
+    public final void drawAnimation(final Animation animation, final int x1, final int y1, final int x2, final int y2) {
+        final Animation.Frame frame = animation.getFrame();
+        if (frame == null) {
+            return;
+        }
+        drawImage(frame.image, x1, y1, x2, y2, frame.x1, frame.y1, frame.x2, frame.y2);
+    }
+
+    /**
+     * Draws the Image the given Animation is showing at the time of recording.
+     * @param animation the Animation to be drawn
+     * @param bounds the bounds in which to draw the given animation
+     */
+    public final void drawAnimation(final Animation animation, final Bounds bounds) {
+        drawAnimation(animation, bounds.x, bounds.y, bounds.x2(), bounds.y2());
+    }
+
+    /**
+     * Draws the specified String with the specified font with the the bottom
+     * left corner as the point of origin.
+     * @param string the String to be drawn
+     * @param x the x coordinate of the String drawn
+     * @param y the x coordinate of the String drawn
+     * @param font the Font of the String when drawn
+     */
+    public final void drawString(final String string, final int x, final int y, final Font font) {
+        buffer.add(CommandBuffer.DRAW_STRING, x, y);
+        buffer.addObject(string);
+        buffer.addObject(font);
+    }
+
+    /**
+     * Draws the specified String with the Font current when it is drawn.
+     * @param string String to be drawn
+     * @param x x location that string will be drawn at
+     * @param y y location that string will be drawn at
+     */
+    public final void drawString(final String string, final int x, final int y) {
+        drawString(string, x, y, null);
+    }
+
+    /**
+     * Sets the Font to be used when drawing text.
+     * @param font the Font to draw text with
+     */
+    public final void setFont(final Font font) {
+        buffer.add(CommandBuffer.SET_FONT);
+        buffer.addObject(font);
+    }
+
+    /**
+     * Sets the bounds within the current screen which things will be drawn,
+     * outside of it everything will be cut off.
+     * @param x the x location of the viewport
+     * @param y the y location of the viewport
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     */
+    public final void enterViewport(final int x, final int y, final int width, final int height) {
+        buffer.add(CommandBuffer.ENTER_VIEWPORT, x, y, width, height);
+    }
+
+    /**
+     * Leaves the viewport and returns the scope to the whole screen.
+     */
+    public final void exitViewport() {
+        buffer.add(CommandBuffer.EXIT_VIEWPORT);
+    }
+
+    /**
+     * Sets the CommandBuffer this records to.
+     * @param buffer the CommandBuffer to record to
+     */
+    final void setBuffer(final CommandBuffer buffer) {
+        this.buffer = buffer;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2009-2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+/**
+ * An interface for listening for the end of an asynchronous image load. The
+ * methods are called on one of ImageLoader's worker threads.
+ * @author Blinz Project
+ */
+public interface ImageLoadListener {
+
+    /**
+     * Called when an image has been loaded and decoded.
+     * @param image the Image loaded
+     */
+    void imageLoaded(Image image);
+
+    /**
+     * Called when an image could not be loaded.
+     * @param path the path or URL of the image
+     * @param cause the reason the image could not be loaded
+     */
+    void imageFailed(String path, Throwable cause);
+}
@@ -17,11 +17,29 @@
 package net.blinz.core.graphics;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import javax.media.opengl.GLContext;
 import net.blinz.core.util.Clients;
 
 /**
  * Has static methods used for loading Images. 
+ *
+ * Each image is decoded once, when it is loaded, and its pixels are kept until
+ * they are uploaded to OpenGL so that the graphics thread never decodes.
+ * Images can be loaded asynchronously, in which case they are decoded on a
+ * pool of worker threads, one per processor.
  * @author Blinz Project
  */
 public final class ImageLoader {
@@ -30,6 +48,52 @@ public final class ImageLoader {
      * Catalog of existing ImageStubs
      */
     private static final Vector<ImageStub> stubs = new Vector<ImageStub>();
+    /**
+     * Width and height of atlas pages.
+     */
+    private static final int ATLAS_SIZE = 1024;
+    /**
+     * Images no wider or taller than this are packed into atlas pages, 0 to disable.
+     */
+    private static int atlasThreshold = 0;
+    /**
+     * Atlas pages that still have images on them.
+     */
+    private static final Vector<TextureAtlas> atlases = new Vector<TextureAtlas>();
+    /**
+     * Contexts and names of textures no longer in use, waiting to be deleted
+     * in a context of the same group. Both are guarded by unusedContexts.
+     */
+    private static final ArrayList<GLContext> unusedContexts = new ArrayList<GLContext>();
+    private static int[] unusedNames = new int[16];
+    /**
+     * Decodes in progress by source type and path, guarded by stubs.
+     */
+    private static final HashMap<String, FutureTask<ImageStub>> decoding =
+            new HashMap<String, FutureTask<ImageStub>>();
+    /**
+     * Threads decoding asynchronously loaded images, created on first use.
+     */
+    private static ExecutorService workers;
+
+    /**
+     * Sets the size below which newly loaded images are packed together into
+     * shared atlas textures rather than given textures of their own. Images
+     * sharing a texture can be drawn without switching textures between them.
+     * @param size the maximum width and height of an image to be atlased,
+     * 0 to disable atlasing
+     */
+    public final static void setAtlasThreshold(final int size) {
+        atlasThreshold = Math.max(0, Math.min(size, ATLAS_SIZE - TextureAtlas.PADDING));
+    }
+
+    /**
+     * Gets the size below which newly loaded images are packed into atlas textures.
+     * @return the maximum width and height of an image to be atlased, 0 if disabled
+     */
+    public final static int getAtlasThreshold() {
+        return atlasThreshold;
+    }
 
     /**
      * Loads an image object associated from the given path.
@@ -37,17 +101,7 @@ public final class ImageLoader {
      * @return an Image object representing the file at the given path
      */
     public final static Image loadImage(final String path) throws IOException {
-
-        for (final ImageStub s : stubs) {
-            if (s.getPath().equals(path) && s.type == ImageStub.SourceType.LOCAL) {
-                s.incrementClient(Clients.localProcess());
-                return new Image(s);
-            }
-        }
-
-        final ImageStub stub = new ImageStub(path, ImageStub.SourceType.LOCAL);
-        stubs.add(stub);
-        return new Image(stub);
+        return load(path, ImageStub.SourceType.LOCAL);
     }
 
     /**
@@ -56,37 +110,313 @@ public final class ImageLoader {
      * @return  an image object associated with the given URL 
      */
     public final static Image loadImageHTTP(final String url) throws IOException {
-        for (final ImageStub s : stubs) {
-            if (s.getPath().equals(url) && s.type == ImageStub.SourceType.HTTP) {
-                s.incrementClient(Clients.localProcess());
-                return new Image(s);
+        return load(url, ImageStub.SourceType.HTTP);
+    }
+
+    /**
+     * Loads the image at the given path on a worker thread.
+     * @param path the path to the image
+     * @return a Future giving the Image, or the IOException that stopped it
+     * from loading as the cause of an ExecutionException
+     */
+    public final static Future<Image> loadImageAsync(final String path) {
+        return loadAsync(path, ImageStub.SourceType.LOCAL, null);
+    }
+
+    /**
+     * Loads the image at the given path on a worker thread, notifying the
+     * given listener when done.
+     * @param path the path to the image
+     * @param listener the ImageLoadListener to notify, on the worker thread
+     * @return a Future giving the Image, or the IOException that stopped it
+     * from loading as the cause of an ExecutionException
+     */
+    public final static Future<Image> loadImageAsync(final String path, final ImageLoadListener listener) {
+        return loadAsync(path, ImageStub.SourceType.LOCAL, listener);
+    }
+
+    /**
+     * Loads the image at the given URL on a worker thread, notifying the given
+     * listener when done.
+     * @param url the URL of the image
+     * @param listener the ImageLoadListener to notify on the worker thread, or null
+     * @return a Future giving the Image, or the IOException that stopped it
+     * from loading as the cause of an ExecutionException
+     */
+    public final static Future<Image> loadImageHTTPAsync(final String url, final ImageLoadListener listener) {
+        return loadAsync(url, ImageStub.SourceType.HTTP, listener);
+    }
+
+    /**
+     * Loads the images at the given paths, decoding them in parallel on the
+     * worker threads.
+     * @param paths the paths to the images
+     * @return Futures giving the Images, in the order of paths
+     */
+    public final static List<Future<Image>> loadImagesAsync(final String... paths) {
+        final List<Future<Image>> retval = new ArrayList<Future<Image>>(paths.length);
+        for (final String path : paths) {
+            retval.add(loadAsync(path, ImageStub.SourceType.LOCAL, null));
+        }
+        return retval;
+    }
+
+    /**
+     * Gets the Image a Future from this class gives, waiting for it to load.
+     * @param image a Future given by one of the asynchronous load methods
+     * @return the Image loaded
+     * @throws IOException if the image could not be loaded or the wait was
+     * interrupted
+     */
+    static final Image get(final Future<Image> image) throws IOException {
+        try {
+            return image.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    /**
+     * Loads an image, decoding it unless it is already loaded. Concurrent loads
+     * of the same image wait for a single decode.
+     * @param path the path or URL of the image
+     * @param type the type of source to load from
+     * @return an Image object representing the image
+     * @throws IOException
+     */
+    private static Image load(final String path, final ImageStub.SourceType type) throws IOException {
+        final String key = type + " " + path;
+        FutureTask<ImageStub> decode;
+        boolean decoder = false;
+        synchronized (stubs) {
+            for (final ImageStub s : stubs) {
+                if (s.getPath().equals(path) && s.type == type) {
+                    s.incrementClient(Clients.localProcess());
+                    return new Image(s);
+                }
+            }
+            decode = decoding.get(key);
+            if (decode == null) {
+                decode = new FutureTask<ImageStub>(new Callable<ImageStub>() {
+
+                    @Override
+                    public ImageStub call() throws IOException {
+                        return new ImageStub(path, type);
+                    }
+                });
+                decoding.put(key, decode);
+                decoder = true;
+            }
+        }
+        if (!decoder) {
+            final ImageStub stub;
+            try {
+                stub = decode.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                throw rethrow(ex);
+            }
+            stub.incrementClient(Clients.localProcess());
+            return new Image(stub);
+        }
+        //decode outside of the lock so that other images load meanwhile
+        decode.run();
+        try {
+            final ImageStub stub = decode.get();
+            addToAtlas(stub);
+            stubs.add(stub);
+            return new Image(stub);
+        } catch (InterruptedException ex) {
+            //the decode has already run, so get() cannot wait
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw rethrow(ex);
+        } finally {
+            synchronized (stubs) {
+                decoding.remove(key);
             }
         }
+    }
+
+    /**
+     * Starts loading an image on a worker thread.
+     * @param path the path or URL of the image
+     * @param type the type of source to load from
+     * @param listener the ImageLoadListener to notify, or null
+     * @return a Future giving the Image
+     */
+    private static Future<Image> loadAsync(final String path, final ImageStub.SourceType type,
+            final ImageLoadListener listener) {
+        final FutureTask<Image> retval = new FutureTask<Image>(new Callable<Image>() {
 
-        final ImageStub stub = new ImageStub(url, ImageStub.SourceType.HTTP);
-        stubs.add(stub);
-        return new Image(stub);
+            @Override
+            public Image call() throws IOException {
+                return load(path, type);
+            }
+        }) {
+
+            @Override
+            protected void done() {
+                if (listener == null || isCancelled()) {
+                    return;
+                }
+                try {
+                    listener.imageLoaded(get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    listener.imageFailed(path, ex.getCause());
+                }
+            }
+        };
+        getWorkers().execute(retval);
+        return retval;
+    }
+
+    /**
+     * Gets the worker threads, starting them if necessary.
+     * @return the ExecutorService decoding asynchronously loaded images
+     */
+    private static synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread retval = new Thread(r);
+                            retval.setName("Image Loader");
+                            retval.setDaemon(true);
+                            return retval;
+                        }
+                    });
+        }
+        return workers;
+    }
+
+    /**
+     * Unwraps the cause of a failed load.
+     * @param ex the ExecutionException thrown by a Future of a load
+     * @return the IOException to throw
+     */
+    private static IOException rethrow(final ExecutionException ex) {
+        final Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
     }
 
     /**
      * Removes Images that are no longer in use.
      */
     static final void clearImages() {
-        for (int i = 0; i < stubs.size();) {
-            if (stubs.get(i).dependents() == 0) {
-                stubs.remove(i).dumpImage();
-            } else {
-                i++;
+        synchronized (stubs) {
+            for (int i = 0; i < stubs.size();) {
+                if (stubs.get(i).dependents() == 0) {
+                    stubs.remove(i).release();
+                } else {
+                    i++;
+                }
             }
         }
     }
 
+    /**
+     * Deletes the queued textures that belong to the current context or a
+     * context sharing with it, must be called with that context current.
+     * Textures of other contexts are left queued for those contexts to delete.
+     * @param state the GLState of the current context
+     */
+    static final void disposeTextures(final GLState state) {
+        synchronized (unusedContexts) {
+            final GLContext current = GLContext.getCurrent();
+            final int count = unusedContexts.size();
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                final GLContext context = unusedContexts.get(i);
+                if (ContextGroups.shared(context, current)) {
+                    state.gl.glDeleteTextures(1, unusedNames, i);
+                } else {
+                    unusedContexts.set(kept, context);
+                    unusedNames[kept++] = unusedNames[i];
+                }
+            }
+            if (kept < count) {
+                unusedContexts.subList(kept, count).clear();
+                state.forgetTexture();
+            }
+        }
+    }
+
+    /**
+     * Queues the given texture to be deleted the next time a context of the
+     * group it was made in draws.
+     * @param context the context the texture was made in
+     * @param texture the OpenGL name of the texture
+     */
+    static final void disposeLater(final GLContext context, final int texture) {
+        synchronized (unusedContexts) {
+            final int i = unusedContexts.size();
+            if (i == unusedNames.length) {
+                unusedNames = Arrays.copyOf(unusedNames, i * 2);
+            }
+            unusedNames[i] = texture;
+            unusedContexts.add(context);
+        }
+    }
+
+    /**
+     * Packs the given ImageStub into an atlas page if it is small enough.
+     * @param stub the ImageStub to pack
+     */
+    private static synchronized void addToAtlas(final ImageStub stub) {
+        if (stub.getWidth() > atlasThreshold || stub.getHeight() > atlasThreshold) {
+            return;
+        }
+        for (final TextureAtlas atlas : atlases) {
+            if (atlas.add(stub)) {
+                return;
+            }
+        }
+        final TextureAtlas atlas = new TextureAtlas(ATLAS_SIZE, ATLAS_SIZE);
+        atlas.add(stub);
+        atlases.add(atlas);
+    }
+
+    /**
+     * Removes the given ImageStub from its atlas page, queueing the page's
+     * texture to be deleted if it is left empty.
+     * @param stub the ImageStub to remove
+     */
+    static synchronized void removeFromAtlas(final ImageStub stub) {
+        final TextureAtlas atlas = stub.atlas;
+        atlas.remove(stub);
+        if (atlas.isEmpty()) {
+            atlases.remove(atlas);
+            atlas.release();
+        }
+    }
+
     /**
      * Dumps the image data stored in memory.
      */
     static final void dumpImageData() {
-        for (final ImageStub stub : stubs) {
-            stub.dumpImage();
+        synchronized (stubs) {
+            for (final ImageStub stub : stubs) {
+                stub.dumpImage();
+            }
         }
     }
 }
@@ -17,6 +17,7 @@
 package net.blinz.core.graphics;
 
 import com.sun.opengl.util.texture.Texture;
+import com.sun.opengl.util.texture.TextureCoords;
 import com.sun.opengl.util.texture.TextureIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -25,6 +26,7 @@ import java.net.URL;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import javax.media.opengl.GLContext;
 
 /**
  * Contains the objects used to implement image support.
@@ -41,10 +43,30 @@ final class ImageStub extends ResourceStub {
      * Denotes the type of source to be used for this stub, local or remote.
      */
     SourceType type = SourceType.LOCAL;
+    /**
+     * The atlas page this image is packed into, null if it has its own texture.
+     */
+    TextureAtlas atlas;
+    /**
+     * Location of this image on its atlas page.
+     */
+    int atlasX, atlasY;
+    /**
+     * Texture coordinates of this image, valid once getTextureObject(state)
+     * has been called or, if atlased, once placed on a page.
+     */
+    float left, top, right, bottom;
     private String path;
     private Texture texture;
+    /**
+     * The context in which the texture was created.
+     */
+    private GLContext context;
     private int width, height;
-    private BufferedImage bufferedImage;
+    /**
+     * The decoded pixels, kept from loading until they are uploaded.
+     */
+    private volatile BufferedImage bufferedImage;
 
     /**
      * Constructor
@@ -83,50 +105,126 @@ final class ImageStub extends ResourceStub {
     }
 
     /**
-     * Gets the JOGL Texture representation of the image this ImageStub represents.
-     * @return the JOGL Texture representation of the image this ImageStub represents
+     * Gets the OpenGL name of the texture holding the image this ImageStub
+     * represents, creating or uploading it as necessary. A texture made in a
+     * context that does not share with the current one is left to be deleted
+     * there, and the image is uploaded again.
+     * @param state the GLState of the current context
+     * @return the OpenGL name of the texture holding this image
      */
-    final Texture getTexture() {
+    final synchronized int getTextureObject(final GLState state) {
+        if (atlas != null) {
+            return atlas.getTextureObject(state);
+        }
+        final GLContext current = GLContext.getCurrent();
+        if (texture != null && !ContextGroups.shared(context, current)) {
+            ImageLoader.disposeLater(context, texture.getTextureObject());
+            texture = null;
+        }
         if (texture == null) {
-            if (bufferedImage == null) {
-                try {
-                    if (type == SourceType.LOCAL) {
-                        bufferedImage = ImageIO.read(new File(path));
-                    } else {
-                        bufferedImage = ImageIO.read(new URL(path));
-                    }
-                } catch (IOException ex) {
-                    Logger.getLogger(ImageStub.class.getName()).log(Level.SEVERE, null, ex);
-                }
+            texture = (Texture) TextureIO.newTexture(takePixels(), true);
+            context = current;
+            state.forgetTexture();
+            final TextureCoords t = texture.getImageTexCoords();
+            left = t.left();
+            top = t.top();
+            right = t.right();
+            bottom = t.bottom();
+        }
+        return texture.getTextureObject();
+    }
+
+    /**
+     * Gets the decoded image without taking it, so that it is still held for
+     * the upload to OpenGL. Reads the image again if it has already been
+     * dropped, without keeping the copy read.
+     * @return the decoded image
+     */
+    final BufferedImage getPixels() {
+        final BufferedImage retval = bufferedImage;
+        if (retval != null) {
+            return retval;
+        }
+        try {
+            return read();
+        } catch (IOException ex) {
+            Logger.getLogger(ImageStub.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the decoded image, reading it again if it has already been dropped.
+     * This ImageStub no longer holds the pixels after this call.
+     * @return the decoded image
+     */
+    final BufferedImage takePixels() {
+        BufferedImage retval = bufferedImage;
+        bufferedImage = null;
+        if (retval == null) {
+            try {
+                retval = read();
+            } catch (IOException ex) {
+                Logger.getLogger(ImageStub.class.getName()).log(Level.SEVERE, null, ex);
             }
-            texture = (Texture) TextureIO.newTexture(bufferedImage, true);
-            bufferedImage = null;
         }
-        return texture;
+        return retval;
     }
 
     /**
      * Dumps the object representing the image.
      */
-    final void dumpImage() {
+    final synchronized void dumpImage() {
         texture = null;
+        context = null;
         bufferedImage = null;
+        if (atlas != null) {
+            atlas.dump();
+        }
     }
 
     /**
-     * Loads the image from storage.
+     * Releases this image's texture or its place on its atlas page, the
+     * texture is deleted the next time a context it belongs to draws.
+     */
+    final synchronized void release() {
+        if (atlas != null) {
+            ImageLoader.removeFromAtlas(this);
+            atlas = null;
+        }
+        if (texture != null) {
+            ImageLoader.disposeLater(context, texture.getTextureObject());
+            texture = null;
+            context = null;
+        }
+        bufferedImage = null;
+    }
+
+    /**
+     * Loads the image from storage, keeping the pixels for the upload to
+     * OpenGL so that the image is only decoded once.
      * @throws IOException
      */
     private final void load() throws IOException {
+        final BufferedImage image = read();
+        if (image == null) {
+            throw new IOException("No decoder for " + path);
+        }
+        width = image.getWidth();
+        height = image.getHeight();
+        bufferedImage = image;
+    }
+
+    /**
+     * Reads and decodes the image from its source.
+     * @return the decoded image
+     * @throws IOException
+     */
+    private BufferedImage read() throws IOException {
         if (type == SourceType.LOCAL) {
-            bufferedImage = ImageIO.read(new File(path));
+            return ImageIO.read(new File(path));
         } else {
-            bufferedImage = ImageIO.read(new URL(path));
-        }
-        width = bufferedImage.getWidth();
-        height = bufferedImage.getHeight();
-        if (Display.isInitialized()) {
-            bufferedImage = null;
+            return ImageIO.read(new URL(path));
         }
     }
 }
@@ -0,0 +1,210 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.WeakHashMap;
+import net.blinz.core.util.Bounds;
+
+/**
+ * Surface that draws into a BufferedImage with Java2D, needing no OpenGL.
+ * @author Blinz Project
+ */
+final class Java2DSurface implements Surface {
+
+    private Graphics2D g;
+    private final int imageHeight;
+    /**
+     * Transform placing the origin at the top left corner of the context.
+     */
+    private final AffineTransform base = new AffineTransform();
+    /**
+     * The current viewport's clip, relative to the top left corner of the context.
+     */
+    private final Bounds clip = new Bounds();
+    private java.awt.Color color = java.awt.Color.BLACK;
+    /**
+     * Composite images are drawn with, carrying the alpha of the tint.
+     */
+    private Composite imageComposite = AlphaComposite.SrcOver;
+    /**
+     * Decoded images, kept for as long as their ImageStubs.
+     */
+    private final WeakHashMap<ImageStub, BufferedImage> images = new WeakHashMap<ImageStub, BufferedImage>();
+    private int[] xPoints = new int[16], yPoints = new int[16];
+
+    /**
+     * Constructor
+     * @param imageHeight the height of the image drawn to, to convert the
+     * bounds of contexts to it
+     */
+    Java2DSurface(final int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    /**
+     * Sets the Graphics2D to draw with for the next frame.
+     * @param g the Graphics2D of the image to draw to
+     */
+    final void setGraphics(final Graphics2D g) {
+        this.g = g;
+    }
+
+    @Override
+    public final void begin(final Bounds context) {
+        //contexts are positioned from the bottom of the window
+        base.setToTranslation(context.getX(), imageHeight - context.getY() - context.getHeight());
+    }
+
+    @Override
+    public final void viewport(final Bounds clip, final Bounds visible, final boolean clipVisible,
+            final int originX, final int originY, final int translateX, final int translateY,
+            final boolean scissorClipping) {
+        this.clip.setBounds(clip);
+        g.setTransform(base);
+        g.setClip(visible.x, visible.y, visible.width, visible.height);
+        g.translate(originX + translateX, originY + translateY);
+    }
+
+    @Override
+    public final void translate(final int x, final int y) {
+        g.translate(x, y);
+    }
+
+    @Override
+    public final void setColor(final Color color) {
+        final int rgba = color.rgba;
+        //java.awt.Color packs as ARGB
+        final int argb = (rgba >>> 8) | (rgba << 24);
+        if (this.color.getRGB() != argb) {
+            this.color = new java.awt.Color(argb, true);
+        }
+    }
+
+    /**
+     * Only the alpha of the tint is applied, Java2D has no cheap way to
+     * multiply an image by a color.
+     * @param tint the color to multiply images by
+     */
+    @Override
+    public final void setTint(final Color tint) {
+        final int alpha = tint.rgba & 0xff;
+        imageComposite = alpha == 0xff ? AlphaComposite.SrcOver
+                : AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha / 255f);
+    }
+
+    @Override
+    public final void count(final boolean visible) {
+    }
+
+    @Override
+    public final void fillRect(final int x1, final int y1, final int x2, final int y2) {
+        g.setColor(color);
+        g.fillRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+    }
+
+    @Override
+    public final void drawRect(final int x1, final int y1, final int x2, final int y2) {
+        g.setColor(color);
+        g.drawRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+    }
+
+    @Override
+    public final void drawLine(final int x1, final int y1, final int x2, final int y2) {
+        g.setColor(color);
+        g.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public final void fillPolygon(final Polygon polygon) {
+        synchronized (polygon) {
+            fillPolygon(polygon.packedPoints(), 0, polygon.size(), null, 0, 0);
+        }
+    }
+
+    @Override
+    public final void fillPolygon(final int[] coords, final int offset, final int points,
+            final int[] indices, final int indexOffset, final int indexCount) {
+        unpack(coords, offset, points);
+        g.setColor(color);
+        g.fillPolygon(xPoints, yPoints, points);
+    }
+
+    @Override
+    public final void drawPolygon(final int[] coords, final int offset, final int points) {
+        unpack(coords, offset, points);
+        g.setColor(color);
+        g.drawPolyline(xPoints, yPoints, points);
+    }
+
+    @Override
+    public final void drawImage(final ImageStub stub, final int x1, final int y1, final int x2, final int y2,
+            final int sx1, final int sy1, final int sx2, final int sy2) {
+        BufferedImage image = images.get(stub);
+        if (image == null) {
+            image = stub.getPixels();
+            if (image == null) {
+                return;
+            }
+            images.put(stub, image);
+        }
+        final Composite composite = g.getComposite();
+        g.setComposite(imageComposite);
+        g.drawImage(image, x1, y1, x2, y2, sx1, sy1, sx2, sy2, null);
+        g.setComposite(composite);
+    }
+
+    @Override
+    public final void drawString(final String string, final int x, final int y, final Font font, final Color color) {
+        final AffineTransform transform = g.getTransform();
+        g.setTransform(base);
+        g.setFont(font.stub.getFont());
+        setColor(color);
+        g.setColor(this.color);
+        g.drawString(string, clip.x + x, clip.y + y + font.getSize());
+        g.setTransform(transform);
+    }
+
+    @Override
+    public final void flush() {
+    }
+
+    @Override
+    public final void flushText() {
+    }
+
+    /**
+     * Copies the given packed points into xPoints and yPoints.
+     * @param coords array holding x, y pairs of the points
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points
+     */
+    private void unpack(final int[] coords, final int offset, final int points) {
+        if (xPoints.length < points) {
+            xPoints = new int[points];
+            yPoints = new int[points];
+        }
+        for (int i = 0; i < points; i++) {
+            xPoints[i] = coords[offset + i * 2];
+            yPoints[i] = coords[offset + i * 2 + 1];
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.BufferUtil;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import java.util.Vector;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLCapabilities;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLEventListener;
+import javax.media.opengl.GLException;
+import javax.media.opengl.GLPbuffer;
+
+/**
+ * Draws Canvases into an offscreen pbuffer instead of a window, for making
+ * thumbnails or screenshots without opening the Display. Canvases are drawn
+ * exactly as the Display draws them. Each frame is drawn on the calling
+ * thread by render() or renderToBuffer(), and the image or buffer returned
+ * is reused by the next frame. A Canvas may also be on the Display or another
+ * renderer, it is then drawn by one of them at a time.
+ *
+ * An OpenGL implementation is still required, on a machine without a screen
+ * a software one such as Mesa can be used. If the Display is initialized
+ * first the pbuffer shares its textures.
+ * @author Blinz Project
+ */
+public final class OffscreenRenderer {
+
+    private final int width, height;
+    private final GLPbuffer pbuffer;
+    private final Renderer renderer = new Renderer();
+    /**
+     * The last frame, bottom row first.
+     */
+    private final IntBuffer pixels;
+    private final BufferedImage image;
+
+    /**
+     * Constructor
+     * @param width the width of the frames to draw
+     * @param height the height of the frames to draw
+     * @throws GLException if pbuffers are not supported
+     */
+    public OffscreenRenderer(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        final GLDrawableFactory factory = GLDrawableFactory.getFactory();
+        if (!factory.canCreateGLPbuffer()) {
+            throw new GLException("pbuffers are not supported");
+        }
+        final GLCapabilities c = new GLCapabilities();
+        c.setDoubleBuffered(false);
+        final GLContext share = Display.getContext();
+        pbuffer = factory.createGLPbuffer(c, null, width, height, share);
+        ContextGroups.register(pbuffer.getContext(), share);
+        pbuffer.setAutoSwapBufferMode(false);
+        pbuffer.addGLEventListener(renderer);
+        pixels = BufferUtil.newIntBuffer(width * height);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Adds the given Canvas to be drawn in each frame.
+     * @param screen the Canvas to be added
+     */
+    public final void addCanvas(final Canvas screen) {
+        renderer.canvas.add(screen);
+    }
+
+    /**
+     * Removes the given Canvas, it will no longer be drawn.
+     * @param screen the Canvas to be removed
+     */
+    public final void removeCanvas(final Canvas screen) {
+        renderer.canvas.remove(screen);
+    }
+
+    /**
+     * Gets the width of the frames drawn.
+     * @return the width of the frames drawn
+     */
+    public final int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the frames drawn.
+     * @return the height of the frames drawn
+     */
+    public final int getHeight() {
+        return height;
+    }
+
+    /**
+     * Draws a frame and returns it as an image. The same BufferedImage is
+     * returned each time, overwritten by the next frame.
+     * @return the frame drawn
+     */
+    public final synchronized BufferedImage render() {
+        FrameClock.tick();
+        pbuffer.display();
+        final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int row = 0; row < height; row++) {
+            pixels.position(row * width);
+            pixels.get(data, (height - 1 - row) * width, width);
+        }
+        pixels.rewind();
+        return image;
+    }
+
+    /**
+     * Draws a frame and returns its pixels as packed ARGB ints, bottom row
+     * first as OpenGL reads them. The same direct buffer is returned each
+     * time, overwritten by the next frame.
+     * @return the pixels of the frame drawn
+     */
+    public final synchronized IntBuffer renderToBuffer() {
+        FrameClock.tick();
+        pbuffer.display();
+        return pixels;
+    }
+
+    /**
+     * Releases the pbuffer, this OffscreenRenderer can no longer be used.
+     */
+    public final synchronized void dispose() {
+        pbuffer.destroy();
+    }
+
+    /**
+     * Draws the Canvases into the pbuffer and reads each frame into pixels.
+     * Unlike the Display's listener it has no swap interval or buffers to
+     * swap, and always draws whole frames.
+     */
+    private final class Renderer implements GLEventListener {
+
+        private final Vector<Canvas> canvas = new Vector<Canvas>();
+        /**
+         * Shadow of the OpenGL state of the pbuffer's context.
+         */
+        private final GLState state = new GLState();
+
+        @Override
+        public void init(final GLAutoDrawable drawable) {
+            final GL gl = drawable.getGL();
+            gl.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+            gl.glColor3f(0.0f, 0.0f, 0.0f);
+            gl.glPointSize(4.0f);
+            gl.glEnable(GL.GL_LINE_SMOOTH);
+            gl.glEnable(GL.GL_BLEND);
+            gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+            gl.glHint(GL.GL_LINE_SMOOTH_HINT, GL.GL_DONT_CARE);
+            state.reset();
+        }
+
+        @Override
+        public void display(final GLAutoDrawable drawable) {
+            state.frame(drawable.getGL());
+            ImageLoader.disposeTextures(state);
+            PolygonMesh.disposeBuffers(state);
+            state.disable(GL.GL_SCISSOR_TEST);
+            final GL gl = state.gl;
+            gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+            for (int i = 0; i < canvas.size(); i++) {
+                canvas.get(i).draw(state, null);
+            }
+            gl.glReadBuffer(GL.GL_FRONT);
+            gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 4);
+            pixels.clear();
+            gl.glReadPixels(0, 0, width, height, GL.GL_BGRA, GL.GL_UNSIGNED_INT_8_8_8_8_REV, pixels);
+            pixels.rewind();
+        }
+
+        @Override
+        public void reshape(final GLAutoDrawable drawable, int x, int y, int width, int height) {
+            state.reset();
+        }
+
+        @Override
+        public void displayChanged(final GLAutoDrawable drawable, boolean modeChanged, boolean deviceChanged) {
+        }
+    }
+}
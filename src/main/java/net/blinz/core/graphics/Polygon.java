@@ -16,27 +16,63 @@
  */
 package net.blinz.core.graphics;
 
-import java.util.Vector;
+import java.util.Arrays;
+import net.blinz.core.util.Bounds;
 import net.blinz.core.util.Position;
 
 /**
  * Polygon stores a series of points, each being connected to the previous with
  * the exception of the last one which is connected to the first.
+ *
+ * Points are stored packed as x, y pairs in a single int array. Points added
+ * with addPointByReference follow the Position they were added with.
  * @author Blinz Project
  */
 public final class Polygon {
 
     /**
-     * List storing points on the polygon.
+     * x, y pairs of the points on the polygon.
+     */
+    private int[] coords = new int[16];
+    private int size = 0;
+    /**
+     * Positions followed by points added by reference, null until one is added.
+     */
+    private Position[] references;
+    /**
+     * Indices of the points of each triangle of the triangulation.
+     */
+    private int[] triangles = new int[0];
+    private int triangleCount = 0;
+    /**
+     * Scratch space for triangulating.
+     */
+    private int[] remaining = new int[0];
+    /**
+     * Whether points have changed since the triangulation was made.
      */
-    private final Vector<Position> points = new Vector<Position>();
+    private boolean modified = true;
+    /**
+     * Buffers of the triangulation, created when this Polygon is first filled
+     * directly.
+     */
+    private PolygonMesh mesh;
+    /**
+     * Whether the triangulation has changed since the mesh was updated.
+     */
+    private boolean meshStale = true;
+    /**
+     * Bounding box of the points, recalculated when stale.
+     */
+    private int minX, minY, maxX, maxY;
+    private boolean boundsStale = true;
 
     /**
      * Adds a copy of the specified point to the last spot on the list.
      * @param loc
      */
     public final void addPoint(final Position loc) {
-        points.add(new Position(loc));
+        addPoint(loc.x, loc.y);
     }
 
     /**
@@ -44,32 +80,256 @@ public final class Polygon {
      * @param x the x coordinate of the point
      * @param y the y coordinate of the point
      */
-    public final void addPoint(final int x, final int y) {
-        points.add(new Position(x, y));
+    public final synchronized void addPoint(final int x, final int y) {
+        ensureCapacity(size + 1);
+        coords[size * 2] = x;
+        coords[size * 2 + 1] = y;
+        size++;
+        modified = true;
+        boundsStale = true;
+    }
+
+    /**
+     * Adds the given points to the end of the list.
+     * @param points array holding x, y pairs of the points to add
+     * @param offset index of the x coordinate of the first point to add
+     * @param count the number of points to add
+     */
+    public final synchronized void addPoints(final int[] points, final int offset, final int count) {
+        ensureCapacity(size + count);
+        System.arraycopy(points, offset, coords, size * 2, count * 2);
+        size += count;
+        modified = true;
+        boundsStale = true;
     }
 
     /**
-     * Adds the specified point to the last spot on the list by reference.
+     * Adds the specified point to the last spot on the list by reference,
+     * changes to the given Position will change this Polygon. Following a
+     * reference costs a check of the Position each time the Polygon is drawn.
      * @param loc a reference tot he point to be added
      */
-    public final void addPointByReference(final Position loc) {
-        points.add(loc);
+    public final synchronized void addPointByReference(final Position loc) {
+        final int index = size;
+        addPoint(loc.x, loc.y);
+        if (references == null) {
+            references = new Position[coords.length / 2];
+        }
+        references[index] = loc;
+    }
+
+    /**
+     * Moves the point at the given index. If the point was added by reference
+     * it no longer follows its Position.
+     * @param index the index of the point
+     * @param x the new x coordinate of the point
+     * @param y the new y coordinate of the point
+     */
+    public final synchronized void setPoint(final int index, final int x, final int y) {
+        checkIndex(index);
+        coords[index * 2] = x;
+        coords[index * 2 + 1] = y;
+        if (references != null) {
+            references[index] = null;
+        }
+        modified = true;
+        boundsStale = true;
     }
 
     /**
-     * Gets the point at the specified index.
+     * Gets the point at the specified index. Points added by reference are
+     * returned as the Position they were added with, others as a new Position.
      * @param index the index of the desired point
      * @return the point at index
      */
-    public final Position get(final int index) {
-        return points.get(index);
+    public final synchronized Position get(final int index) {
+        checkIndex(index);
+        if (references != null && references[index] != null) {
+            return references[index];
+        }
+        return new Position(coords[index * 2], coords[index * 2 + 1]);
+    }
+
+    /**
+     * Gets the x coordinate of the point at the specified index.
+     * @param index the index of the desired point
+     * @return the x coordinate of the point at index
+     */
+    public final synchronized int getX(final int index) {
+        checkIndex(index);
+        if (references != null && references[index] != null) {
+            return references[index].x;
+        }
+        return coords[index * 2];
+    }
+
+    /**
+     * Gets the y coordinate of the point at the specified index.
+     * @param index the index of the desired point
+     * @return the y coordinate of the point at index
+     */
+    public final synchronized int getY(final int index) {
+        checkIndex(index);
+        if (references != null && references[index] != null) {
+            return references[index].y;
+        }
+        return coords[index * 2 + 1];
+    }
+
+    /**
+     * Copies the points of this Polygon into the given array as x, y pairs.
+     * @param dest the array to copy to, must fit size() * 2 ints from offset
+     * @param offset the index in dest to copy the x coordinate of the first point to
+     * @return the number of points copied
+     */
+    public final synchronized int getPoints(final int[] dest, final int offset) {
+        followReferences();
+        System.arraycopy(coords, 0, dest, offset, size * 2);
+        return size;
     }
 
     /**
      * Returns the number of points in the Polygon.
      * @return int - number of points in the Polygon.
      */
-    public final int size() {
-        return points.size();
+    public final synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the packed points of this Polygon, valid for size() points. The
+     * caller must hold this Polygon's lock for as long as it uses the array.
+     * @return the array holding x, y pairs of the points of this Polygon
+     */
+    final synchronized int[] packedPoints() {
+        followReferences();
+        return coords;
+    }
+
+    /**
+     * Tests whether the bounding box of this Polygon intersects the given Bounds.
+     * @param bounds the Bounds to test against
+     * @return true if this Polygon's bounding box intersects bounds, false otherwise
+     */
+    final synchronized boolean intersects(final Bounds bounds) {
+        followReferences();
+        if (size == 0) {
+            return false;
+        }
+        if (boundsStale) {
+            minX = maxX = coords[0];
+            minY = maxY = coords[1];
+            for (int i = 1; i < size; i++) {
+                minX = Math.min(minX, coords[i * 2]);
+                minY = Math.min(minY, coords[i * 2 + 1]);
+                maxX = Math.max(maxX, coords[i * 2]);
+                maxY = Math.max(maxY, coords[i * 2 + 1]);
+            }
+            boundsStale = false;
+        }
+        return bounds.intersects(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Copies the triangulation of this Polygon into the given array, bringing
+     * it up to date first. Each triangle is three indices of points of this
+     * Polygon.
+     * @param dest the array to copy to, must fit
+     * PolygonMesh.triangulatedLength(size()) ints from offset
+     * @param offset the index in dest to copy the first index to
+     * @return the number of indices copied
+     */
+    final synchronized int getTriangles(final int[] dest, final int offset) {
+        triangulate();
+        System.arraycopy(triangles, 0, dest, offset, triangleCount);
+        return triangleCount;
+    }
+
+    /**
+     * Gets the buffers of the triangulation of this Polygon, bringing them up
+     * to date first. Must be called on the graphics thread.
+     * @return the buffers of the triangulation of this Polygon
+     */
+    final synchronized PolygonMesh getMesh() {
+        triangulate();
+        if (mesh == null) {
+            mesh = new PolygonMesh();
+            meshStale = true;
+        }
+        if (meshStale) {
+            mesh.update(coords, size, triangles, triangleCount);
+            meshStale = false;
+        }
+        return mesh;
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        if (mesh != null) {
+            mesh.release();
+        }
+        super.finalize();
+    }
+
+    /**
+     * Triangulates this Polygon again if its points have changed.
+     */
+    private void triangulate() {
+        followReferences();
+        if (!modified) {
+            return;
+        }
+        final int length = PolygonMesh.triangulatedLength(size);
+        if (triangles.length < length) {
+            triangles = new int[length];
+        }
+        if (remaining.length < size) {
+            remaining = new int[size];
+        }
+        triangleCount = PolygonMesh.triangulate(coords, 0, size, triangles, remaining);
+        modified = false;
+        meshStale = true;
+    }
+
+    /**
+     * Copies the coordinates of Positions added by reference into the packed
+     * points, marking this Polygon modified if any have moved.
+     */
+    private void followReferences() {
+        if (references == null) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            final Position p = references[i];
+            if (p != null && (coords[i * 2] != p.x || coords[i * 2 + 1] != p.y)) {
+                coords[i * 2] = p.x;
+                coords[i * 2 + 1] = p.y;
+                modified = true;
+                boundsStale = true;
+            }
+        }
+    }
+
+    /**
+     * Grows the packed points to fit the given number of points.
+     * @param points the number of points that must fit
+     */
+    private void ensureCapacity(final int points) {
+        if (coords.length < points * 2) {
+            coords = Arrays.copyOf(coords, Math.max(coords.length * 2, points * 2));
+            if (references != null) {
+                references = Arrays.copyOf(references, coords.length / 2);
+            }
+        }
+    }
+
+    /**
+     * Throws an ArrayIndexOutOfBoundsException if the given index is not that of a point.
+     * @param index the index to check
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
     }
 }
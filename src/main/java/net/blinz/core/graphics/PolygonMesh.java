@@ -0,0 +1,292 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.BufferUtil;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+/**
+ * The triangulated form of a Polygon. The triangulation is kept as packed
+ * vertex and index arrays, uploaded to buffer objects once and redrawn from
+ * them until the Polygon changes.
+ * @author Blinz Project
+ */
+final class PolygonMesh {
+
+    /**
+     * Buffer objects of collected meshes, deleted on the graphics thread.
+     */
+    private static final ArrayList<PolygonMesh> unused = new ArrayList<PolygonMesh>();
+    private int indexCount = 0;
+    private FloatBuffer vertexData;
+    private IntBuffer indexData;
+    private boolean uploaded = false;
+    private int vbo = 0, ibo = 0;
+    /**
+     * The context in which the buffer objects were created.
+     */
+    private GLContext context;
+
+    /**
+     * Replaces the current triangulation with the given one.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param size the number of points in the polygon
+     * @param indices the indices of the points of each triangle
+     * @param indexCount the number of indices
+     */
+    final void update(final int[] coords, final int size, final int[] indices, final int indexCount) {
+        this.indexCount = indexCount;
+
+        if (vertexData == null || vertexData.capacity() < size * 2) {
+            vertexData = BufferUtil.newFloatBuffer(size * 2);
+        }
+        vertexData.clear();
+        for (int i = 0; i < size * 2; i++) {
+            vertexData.put(coords[i]);
+        }
+        vertexData.flip();
+        if (indexData == null || indexData.capacity() < indexCount) {
+            indexData = BufferUtil.newIntBuffer(indexCount);
+        }
+        indexData.clear();
+        indexData.put(indices, 0, indexCount);
+        indexData.flip();
+        uploaded = false;
+    }
+
+    /**
+     * Draws the triangulation, the caller is responsible for color and
+     * blending state.
+     * @param state the GL state to draw with
+     */
+    final void draw(final GLState state) {
+        if (indexCount == 0) {
+            return;
+        }
+        final GL gl = state.gl;
+        state.enableClientState(GL.GL_VERTEX_ARRAY);
+        state.disableClientState(GL.GL_TEXTURE_COORD_ARRAY);
+        if (bindBuffers(state)) {
+            if (!uploaded) {
+                gl.glBufferData(GL.GL_ARRAY_BUFFER, vertexData.limit() * BufferUtil.SIZEOF_FLOAT,
+                        vertexData, GL.GL_STATIC_DRAW);
+                gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, indexCount * BufferUtil.SIZEOF_INT,
+                        indexData, GL.GL_STATIC_DRAW);
+                uploaded = true;
+            }
+            gl.glVertexPointer(2, GL.GL_FLOAT, 0, 0);
+            gl.glDrawElements(GL.GL_TRIANGLES, indexCount, GL.GL_UNSIGNED_INT, 0);
+        } else {
+            gl.glVertexPointer(2, GL.GL_FLOAT, 0, vertexData);
+            gl.glDrawElements(GL.GL_TRIANGLES, indexCount, GL.GL_UNSIGNED_INT, indexData);
+        }
+    }
+
+    /**
+     * Queues this mesh's buffer objects to be deleted on the graphics thread.
+     */
+    final void release() {
+        if (context != null) {
+            synchronized (unused) {
+                unused.add(this);
+            }
+        }
+    }
+
+    /**
+     * Deletes the buffer objects of released meshes that belong to the
+     * current context, must be called with that context current. Meshes of
+     * other contexts are left queued for those contexts to delete.
+     * @param state the GLState of the current context
+     */
+    static final void disposeBuffers(final GLState state) {
+        synchronized (unused) {
+            final GLContext current = GLContext.getCurrent();
+            for (int i = unused.size() - 1; i >= 0; i--) {
+                final PolygonMesh mesh = unused.get(i);
+                if (mesh.vbo == 0) {
+                    unused.remove(i);
+                } else if (ContextGroups.shared(mesh.context, current)) {
+                    unused.remove(i);
+                    state.bindArrayBuffer(0);
+                    state.bindElementBuffer(0);
+                    state.gl.glDeleteBuffers(2, new int[]{mesh.vbo, mesh.ibo}, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of indices needed to triangulate a polygon.
+     * @param points the number of points in the polygon
+     * @return the number of indices needed to triangulate the polygon
+     */
+    static final int triangulatedLength(final int points) {
+        return points < 3 ? 0 : (points - 2) * 3;
+    }
+
+    /**
+     * Splits the given simple polygon, convex or concave, into triangles by
+     * ear clipping. Self-intersecting polygons produce some triangles for every
+     * point but may not be filled correctly. Safe to call from any thread as
+     * long as each caller passes its own scratch array.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points in the polygon
+     * @param indices receives the indices of the points of each triangle,
+     * must fit triangulatedLength(points)
+     * @param remaining scratch space owned by the caller, must fit points
+     * @return the number of indices written
+     */
+    static final int triangulate(final int[] coords, final int offset, final int points,
+            final int[] indices, final int[] remaining) {
+        if (points < 3) {
+            return 0;
+        }
+        long area = 0;
+        for (int i = 0; i < points; i++) {
+            final int a = offset + i * 2;
+            final int b = offset + ((i + 1) % points) * 2;
+            area += (long) coords[a] * coords[b + 1] - (long) coords[b] * coords[a + 1];
+            remaining[i] = i;
+        }
+        final int winding = area < 0 ? -1 : 1;
+
+        int count = 0;
+        int n = points;
+        int i = 0;
+        int misses = 0;
+        while (n > 3) {
+            final int prev = remaining[(i + n - 1) % n];
+            final int cur = remaining[i];
+            final int next = remaining[(i + 1) % n];
+            //if no ear can be found the polygon is not simple, clip anyway
+            if (misses >= n || isEar(coords, offset, remaining, n, prev, cur, next, winding)) {
+                indices[count++] = prev;
+                indices[count++] = cur;
+                indices[count++] = next;
+                System.arraycopy(remaining, i + 1, remaining, i, n - i - 1);
+                n--;
+                misses = 0;
+                if (i == n) {
+                    i = 0;
+                }
+            } else {
+                i = (i + 1) % n;
+                misses++;
+            }
+        }
+        indices[count++] = remaining[0];
+        indices[count++] = remaining[1];
+        indices[count++] = remaining[2];
+        return count;
+    }
+
+    /**
+     * Binds this mesh's buffer objects, creating them if necessary.
+     * @param state the GL state to draw with
+     * @return true if buffer objects are bound, false if they are not supported
+     */
+    private boolean bindBuffers(final GLState state) {
+        final GLContext current = GLContext.getCurrent();
+        if (current != context) {
+            final boolean shared = vbo != 0 && ContextGroups.shared(context, current);
+            context = current;
+            if (shared) {
+                //the buffers and their contents belong to the new context too
+                state.bindArrayBuffer(vbo);
+                state.bindElementBuffer(ibo);
+                return true;
+            }
+            //buffers made in an unrelated context go with that context
+            vbo = 0;
+            ibo = 0;
+            uploaded = false;
+            if (state.gl.isFunctionAvailable("glGenBuffers")) {
+                final int[] names = new int[2];
+                state.gl.glGenBuffers(2, names, 0);
+                vbo = names[0];
+                ibo = names[1];
+            }
+        }
+        if (vbo == 0) {
+            state.unbindArrayBuffer();
+            state.bindElementBuffer(0);
+            return false;
+        }
+        state.bindArrayBuffer(vbo);
+        state.bindElementBuffer(ibo);
+        return true;
+    }
+
+    /**
+     * Indicates whether the corner at cur is an ear of the remaining polygon,
+     * convex and with no other remaining point inside it.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param remaining the points remaining
+     * @param n the number of points remaining
+     * @param prev the point before the corner
+     * @param cur the point of the corner
+     * @param next the point after the corner
+     * @param winding 1 if the polygon's points wind positively, -1 otherwise
+     * @return true if the corner can be clipped
+     */
+    private static boolean isEar(final int[] coords, final int offset, final int[] remaining, final int n,
+            final int prev, final int cur, final int next, final int winding) {
+        final int ax = coords[offset + prev * 2], ay = coords[offset + prev * 2 + 1];
+        final int bx = coords[offset + cur * 2], by = coords[offset + cur * 2 + 1];
+        final int cx = coords[offset + next * 2], cy = coords[offset + next * 2 + 1];
+        if (cross(ax, ay, bx, by, cx, cy) * winding <= 0) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            final int p = remaining[i];
+            if (p == prev || p == cur || p == next) {
+                continue;
+            }
+            final int px = coords[offset + p * 2], py = coords[offset + p * 2 + 1];
+            if ((px == ax && py == ay) || (px == bx && py == by) || (px == cx && py == cy)) {
+                continue;
+            }
+            if (cross(ax, ay, bx, by, px, py) * winding >= 0
+                    && cross(bx, by, cx, cy, px, py) * winding >= 0
+                    && cross(cx, cy, ax, ay, px, py) * winding >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the z component of the cross product of (b - a) and (c - b).
+     * @param ax the x coordinate of a
+     * @param ay the y coordinate of a
+     * @param bx the x coordinate of b
+     * @param by the y coordinate of b
+     * @param cx the x coordinate of c
+     * @param cy the y coordinate of c
+     * @return positive if a, b, c turn one way, negative if they turn the other
+     */
+    private static long cross(final int ax, final int ay, final int bx, final int by, final int cx, final int cy) {
+        return (long) (bx - ax) * (cy - by) - (long) (by - ay) * (cx - bx);
+    }
+}
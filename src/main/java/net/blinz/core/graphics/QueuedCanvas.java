@@ -0,0 +1,87 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+/**
+ * A Canvas that is drawn from another thread. The application records a
+ * frame through getRecorder() and publishes it with submit(), the graphics
+ * thread then draws the last published frame until a newer one is submitted.
+ * This lets game logic run on its own thread without racing the renderer.
+ * @author Blinz Project
+ */
+public class QueuedCanvas extends Canvas {
+
+    private final Object lock = new Object();
+    /**
+     * Buffer being recorded to.
+     */
+    private CommandBuffer back = new CommandBuffer();
+    /**
+     * Buffer most recently submitted.
+     */
+    private CommandBuffer ready = new CommandBuffer();
+    /**
+     * Buffer being drawn.
+     */
+    private CommandBuffer front = new CommandBuffer();
+    /**
+     * Whether ready holds a frame newer than front.
+     */
+    private boolean readyIsNew = false;
+    private final GraphicsRecorder recorder = new GraphicsRecorder(back);
+
+    /**
+     * Gets the GraphicsRecorder to record the next frame with.
+     * @return the GraphicsRecorder for this QueuedCanvas
+     */
+    public final GraphicsRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Publishes the frame recorded since the last call to submit() to be drawn,
+     * and starts recording a new frame. The whole Canvas is invalidated.
+     */
+    public final void submit() {
+        synchronized (lock) {
+            final CommandBuffer b = ready;
+            ready = back;
+            back = b;
+            readyIsNew = true;
+        }
+        back.clear();
+        recorder.setBuffer(back);
+        invalidate();
+    }
+
+    /**
+     * Draws the most recently submitted frame.
+     * @param graphics the Graphics to draw with
+     */
+    @Override
+    protected final void draw(final Graphics graphics) {
+        synchronized (lock) {
+            if (readyIsNew) {
+                final CommandBuffer b = front;
+                front = ready;
+                ready = b;
+                readyIsNew = false;
+            }
+        }
+        front.replay(graphics);
+    }
+}
@@ -18,6 +18,7 @@ package net.blinz.core.graphics;
 
 import java.util.ArrayList;
 import net.blinz.core.util.Client;
+import net.blinz.core.util.Clients;
 
 /**
  * Super-class for resource stub.
@@ -50,9 +51,10 @@ abstract class ResourceStub {
     private final ArrayList<ProcessDependents> dependents = new ArrayList<ProcessDependents>();
 
     /**
-     * Constructor
+     * Constructor, the local process is counted as the first dependent.
      */
     ResourceStub() {
+        dependents.add(new ProcessDependents(Clients.localProcess(), 1));
     }
 
     /**
@@ -78,12 +80,14 @@ abstract class ResourceStub {
      */
     final void incrementClient(final Client client) {
         synchronized (dependents) {
+            totalDeps++;
             for (int i = 0; i < dependents.size(); i++) {
                 if (dependents.get(i).client == client) {
-                    totalDeps++;
-                    dependents.remove(i).dependents++;
+                    dependents.get(i).dependents++;
+                    return;
                 }
             }
+            dependents.add(new ProcessDependents(client, 1));
         }
     }
 
@@ -96,7 +100,10 @@ abstract class ResourceStub {
             for (int i = 0; i < dependents.size(); i++) {
                 if (dependents.get(i).client == client) {
                     totalDeps--;
-                    dependents.remove(i).dependents--;
+                    if (--dependents.get(i).dependents == 0) {
+                        dependents.remove(i);
+                    }
+                    return;
                 }
             }
         }
@@ -0,0 +1,100 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Vector;
+
+/**
+ * Draws Canvases into a BufferedImage with Java2D, for machines with no
+ * OpenGL at all. Canvases draw through the same Graphics API as they do on
+ * the Display, though the output differs in detail from OpenGL's. Each frame
+ * is drawn on the calling thread by render(), and the image returned is reused
+ * by the next frame.
+ * @author Blinz Project
+ */
+public final class SoftwareRenderer {
+
+    private final BufferedImage image;
+    private final Java2DSurface surface;
+    private final Vector<Canvas> canvas = new Vector<Canvas>();
+
+    /**
+     * Constructor
+     * @param width the width of the frames to draw
+     * @param height the height of the frames to draw
+     */
+    public SoftwareRenderer(final int width, final int height) {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        surface = new Java2DSurface(height);
+    }
+
+    /**
+     * Adds the given Canvas to be drawn in each frame.
+     * @param screen the Canvas to be added
+     */
+    public final void addCanvas(final Canvas screen) {
+        canvas.add(screen);
+    }
+
+    /**
+     * Removes the given Canvas, it will no longer be drawn.
+     * @param screen the Canvas to be removed
+     */
+    public final void removeCanvas(final Canvas screen) {
+        canvas.remove(screen);
+    }
+
+    /**
+     * Gets the width of the frames drawn.
+     * @return the width of the frames drawn
+     */
+    public final int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * Gets the height of the frames drawn.
+     * @return the height of the frames drawn
+     */
+    public final int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Draws a frame and returns it. The same BufferedImage is returned each
+     * time, overwritten by the next frame.
+     * @return the frame drawn
+     */
+    public final synchronized BufferedImage render() {
+        FrameClock.tick();
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(java.awt.Color.BLACK);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            surface.setGraphics(g);
+            for (int i = 0; i < canvas.size(); i++) {
+                canvas.get(i).draw(surface);
+            }
+        } finally {
+            surface.setGraphics(null);
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.BufferUtil;
+import javax.media.opengl.GL;
+
+/**
+ * Collects textured quads so that consecutive Images sharing a texture are
+ * submitted to OpenGL in a single draw call.
+ * @author Blinz Project
+ */
+final class SpriteBatch extends VertexBatch {
+
+    /**
+     * Number of sprites that fit in the batch before it is flushed.
+     */
+    private static final int CAPACITY = 512;
+    /**
+     * x, y, s, t, rgba
+     */
+    private static final int STRIDE = 4 * BufferUtil.SIZEOF_FLOAT + 4;
+    private int texture = 0;
+    /**
+     * The tint of the sprites being added, as written to vertices.
+     */
+    private int tint = vertexColor(0xffffffff);
+
+    /**
+     * Constructor
+     */
+    SpriteBatch() {
+        super(CAPACITY * 4, STRIDE, 2 * BufferUtil.SIZEOF_FLOAT, 4 * BufferUtil.SIZEOF_FLOAT);
+    }
+
+    /**
+     * Sets the color the sprites added after this call are multiplied by.
+     * Tints are stored with each vertex, so this never flushes the batch.
+     * @param rgba the tint as kept by Color, opaque white to draw sprites as they are
+     */
+    final void setTint(final int rgba) {
+        tint = vertexColor(rgba);
+    }
+
+    /**
+     * Adds a quad to the batch, flushing first if the texture differs from
+     * that of the sprites already in the batch or if the batch is full.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param textureObject the OpenGL name of the texture to draw
+     * @param left the left texture coordinate
+     * @param top the top texture coordinate
+     * @param right the right texture coordinate
+     * @param bottom the bottom texture coordinate
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     */
+    final void add(final GLState state, final int textureObject, final float left, final float top,
+            final float right, final float bottom, final int x1, final int y1, final int x2, final int y2) {
+        if (textureObject != texture) {
+            flush(state);
+            texture = textureObject;
+        }
+        reserve(state, GL.GL_QUADS, 4);
+        //Top Left
+        vertices.putFloat(x1).putFloat(y1).putFloat(left).putFloat(top).putInt(tint);
+        //Top Right
+        vertices.putFloat(x2).putFloat(y1).putFloat(right).putFloat(top).putInt(tint);
+        //Bottom Right
+        vertices.putFloat(x2).putFloat(y2).putFloat(right).putFloat(bottom).putInt(tint);
+        //Bottom Left
+        vertices.putFloat(x1).putFloat(y2).putFloat(left).putFloat(bottom).putInt(tint);
+    }
+
+    @Override
+    final void beginState(final GLState state) {
+        state.enable(GL.GL_BLEND);
+        state.blendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+
+        state.enable(GL.GL_ALPHA_TEST);
+        state.alphaFunc(GL.GL_GREATER, 0);
+
+        state.enable(GL.GL_TEXTURE_2D);
+        state.texEnvMode(GL.GL_MODULATE);
+        state.bindTexture(texture);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import net.blinz.core.util.Bounds;
+
+/**
+ * What Graphics draws on. Graphics keeps track of viewports, translation and
+ * culling, a Surface does the actual drawing. Coordinates given to the drawing
+ * methods are in the current drawing coordinates, those given to
+ * drawString(...) are relative to the top left corner of the current
+ * viewport's clip and are not translated.
+ * @author Blinz Project
+ */
+interface Surface {
+
+    /**
+     * Starts drawing a context.
+     * @param context the bounds of the context, as kept by Canvas
+     */
+    void begin(Bounds context);
+
+    /**
+     * Loads a viewport.
+     * @param clip the viewport's area within its parents, relative to the top
+     * left corner of the context
+     * @param visible the part of clip being drawn, relative to the top left
+     * corner of the context
+     * @param clipVisible whether drawing must be cut off at visible rather
+     * than only at the edges of the context
+     * @param originX the x coordinate of the viewport's origin within the context
+     * @param originY the y coordinate of the viewport's origin within the context
+     * @param translateX the translation from the viewport's origin
+     * @param translateY the translation from the viewport's origin
+     * @param scissorClipping whether the Graphics clips viewports with the scissor test
+     */
+    void viewport(Bounds clip, Bounds visible, boolean clipVisible, int originX, int originY,
+            int translateX, int translateY, boolean scissorClipping);
+
+    /**
+     * Moves the drawing origin.
+     * @param x the distance to move along the x axis
+     * @param y the distance to move along the y axis
+     */
+    void translate(int x, int y);
+
+    /**
+     * Sets the color of primitives and text drawn after this call.
+     * @param color the color to draw with
+     */
+    void setColor(Color color);
+
+    /**
+     * Sets the color images drawn after this call are multiplied by.
+     * @param tint the color to multiply images by
+     */
+    void setTint(Color tint);
+
+    /**
+     * Counts a primitive as drawn or culled.
+     * @param visible whether the primitive is drawn
+     */
+    void count(boolean visible);
+
+    /**
+     * Fills the rectangle with the given corners.
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     */
+    void fillRect(int x1, int y1, int x2, int y2);
+
+    /**
+     * Draws the outline of the rectangle with the given corners.
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     */
+    void drawRect(int x1, int y1, int x2, int y2);
+
+    /**
+     * Draws a line.
+     * @param x1 the x coordinate of the start of the line
+     * @param y1 the y coordinate of the start of the line
+     * @param x2 the x coordinate of the end of the line
+     * @param y2 the y coordinate of the end of the line
+     */
+    void drawLine(int x1, int y1, int x2, int y2);
+
+    /**
+     * Fills the given Polygon.
+     * @param polygon the Polygon to fill
+     */
+    void fillPolygon(Polygon polygon);
+
+    /**
+     * Fills the polygon held in the given coordinate array, using the given
+     * triangulation of it where triangles are drawn.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points in the polygon
+     * @param indices array holding the indices of the points of each triangle,
+     * relative to the first point
+     * @param indexOffset index of the first index
+     * @param indexCount the number of indices
+     */
+    void fillPolygon(int[] coords, int offset, int points, int[] indices, int indexOffset, int indexCount);
+
+    /**
+     * Draws the outline of the polygon held in the given coordinate array,
+     * from the first point to the last.
+     * @param coords array holding x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points in the polygon
+     */
+    void drawPolygon(int[] coords, int offset, int points);
+
+    /**
+     * Draws a rectangle of an image stretched across the rectangle with the
+     * given corners.
+     * @param stub the ImageStub of the image
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     * @param sx1 the x coordinate of the top left corner in the image, in pixels
+     * @param sy1 the y coordinate of the top left corner in the image, in pixels
+     * @param sx2 the x coordinate of the bottom right corner in the image, in pixels
+     * @param sy2 the y coordinate of the bottom right corner in the image, in pixels
+     */
+    void drawImage(ImageStub stub, int x1, int y1, int x2, int y2, int sx1, int sy1, int sx2, int sy2);
+
+    /**
+     * Draws a String, possibly after everything else in the current viewport.
+     * @param string the String to draw
+     * @param x the x coordinate of the String
+     * @param y the y coordinate of the top of the String
+     * @param font the Font to draw with
+     * @param color the Color to draw with
+     */
+    void drawString(String string, int x, int y, Font font, Color color);
+
+    /**
+     * Draws anything held back for batching.
+     */
+    void flush();
+
+    /**
+     * Draws anything held back for batching, then any held back text.
+     */
+    void flushText();
+}
@@ -0,0 +1,264 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.BufferUtil;
+import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+/**
+ * A page of a texture atlas, a single texture holding many small images.
+ * Images are packed onto shelves, rows as tall as the tallest image placed on
+ * them, and are uploaded to the texture the next time it is drawn.
+ *
+ * Space freed by removing an image is reused once no image to its right on
+ * the same shelf remains, so a shelf is reclaimed from its end. Space between
+ * images still on a shelf is not reused.
+ * @author Blinz Project
+ */
+final class TextureAtlas {
+
+    /**
+     * Space left to the right of and below each image to keep neighbours from
+     * bleeding into it, kept transparent.
+     */
+    static final int PADDING = 1;
+    /**
+     * Scratch space for uploading pixels, shared by all pages and guarded by
+     * the class lock.
+     */
+    private static int[] pixels = new int[0];
+    private static IntBuffer pixelBuffer;
+    private final int width, height;
+    private int texture = 0;
+    /**
+     * The context in which the texture was created.
+     */
+    private GLContext context;
+    private final ArrayList<ImageStub> images = new ArrayList<ImageStub>();
+    private final ArrayList<ImageStub> pending = new ArrayList<ImageStub>();
+    private int[] shelfX = new int[8], shelfY = new int[8], shelfHeight = new int[8];
+    private int shelves = 0;
+    /**
+     * The y coordinate at which the next shelf will be opened.
+     */
+    private int nextShelf = 0;
+
+    /**
+     * Constructor
+     * @param width the width of the page in pixels
+     * @param height the height of the page in pixels
+     */
+    TextureAtlas(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Finds room on this page for the given image and assigns it there.
+     * @param stub the ImageStub to place on this page
+     * @return true if the image was placed on this page, false if there was no room
+     */
+    final synchronized boolean add(final ImageStub stub) {
+        final int w = stub.getWidth() + PADDING;
+        final int h = stub.getHeight() + PADDING;
+        int best = -1;
+        for (int i = 0; i < shelves; i++) {
+            if (shelfHeight[i] >= h && width - shelfX[i] >= w
+                    && (best == -1 || shelfHeight[i] < shelfHeight[best])) {
+                best = i;
+            }
+        }
+        if (best == -1) {
+            if (nextShelf + h > height || w > width) {
+                return false;
+            }
+            if (shelves == shelfX.length) {
+                shelfX = grow(shelfX);
+                shelfY = grow(shelfY);
+                shelfHeight = grow(shelfHeight);
+            }
+            best = shelves++;
+            shelfX[best] = 0;
+            shelfY[best] = nextShelf;
+            shelfHeight[best] = h;
+            nextShelf += h;
+        }
+        final int x = shelfX[best];
+        final int y = shelfY[best];
+        shelfX[best] += w;
+
+        stub.atlas = this;
+        stub.left = (float) x / width;
+        stub.top = (float) y / height;
+        stub.right = (float) (x + stub.getWidth()) / width;
+        stub.bottom = (float) (y + stub.getHeight()) / height;
+        stub.atlasX = x;
+        stub.atlasY = y;
+        images.add(stub);
+        pending.add(stub);
+        return true;
+    }
+
+    /**
+     * Removes the given image from this page, reclaiming the end of its shelf
+     * if no image to its right remains. The page is freed once all of its
+     * images are removed.
+     * @param stub the ImageStub to remove
+     */
+    final synchronized void remove(final ImageStub stub) {
+        images.remove(stub);
+        pending.remove(stub);
+        for (int i = 0; i < shelves; i++) {
+            if (shelfY[i] == stub.atlasY) {
+                int end = 0;
+                for (int j = 0; j < images.size(); j++) {
+                    final ImageStub s = images.get(j);
+                    if (s.atlasY == shelfY[i]) {
+                        end = Math.max(end, s.atlasX + s.getWidth() + PADDING);
+                    }
+                }
+                shelfX[i] = end;
+                break;
+            }
+        }
+        //close empty shelves at the bottom so that taller ones can be opened
+        while (shelves > 0 && shelfX[shelves - 1] == 0) {
+            shelves--;
+            nextShelf = shelfY[shelves];
+        }
+    }
+
+    /**
+     * Indicates whether or not any images remain on this page.
+     * @return true if no images remain on this page, false otherwise
+     */
+    final synchronized boolean isEmpty() {
+        return images.isEmpty();
+    }
+
+    /**
+     * Gets the OpenGL name of this page's texture, creating it and uploading
+     * any images that were added since the last call. A texture made in a
+     * context that does not share with the current one is left to be deleted
+     * there, and all images are uploaded again.
+     * @param state the GLState of the current context
+     * @return the OpenGL name of this page's texture
+     */
+    final synchronized int getTextureObject(final GLState state) {
+        final GL gl = state.gl;
+        final GLContext current = GLContext.getCurrent();
+        if (texture != 0 && !ContextGroups.shared(context, current)) {
+            ImageLoader.disposeLater(context, texture);
+            texture = 0;
+            pending.clear();
+            pending.addAll(images);
+        }
+        if (texture == 0) {
+            context = current;
+            final int[] name = new int[1];
+            gl.glGenTextures(1, name, 0);
+            texture = name[0];
+            state.bindTexture(texture);
+            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR);
+            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+            //start transparent, images are sampled linearly into their surroundings
+            gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA8, width, height, 0,
+                    GL.GL_BGRA, GL.GL_UNSIGNED_INT_8_8_8_8_REV, BufferUtil.newIntBuffer(width * height));
+        }
+        if (!pending.isEmpty()) {
+            state.bindTexture(texture);
+            for (int i = 0; i < pending.size(); i++) {
+                upload(gl, pending.get(i));
+            }
+            pending.clear();
+        }
+        return texture;
+    }
+
+    /**
+     * Queues this page's texture to be deleted the next time a context it
+     * belongs to draws.
+     */
+    final synchronized void release() {
+        if (texture != 0) {
+            ImageLoader.disposeLater(context, texture);
+            texture = 0;
+            context = null;
+        }
+    }
+
+    /**
+     * Forgets this page's texture without deleting it, for use when its context
+     * has been lost. The images will be uploaded again when next drawn.
+     */
+    final synchronized void dump() {
+        texture = 0;
+        context = null;
+        pending.clear();
+        pending.addAll(images);
+    }
+
+    /**
+     * Copies the pixels of the given image into its place on this page along
+     * with a transparent gutter, clearing whatever a removed image left there.
+     * This page's texture must be bound.
+     * @param gl the GL of the current context
+     * @param stub the ImageStub to upload
+     */
+    private static synchronized void upload(final GL gl, final ImageStub stub) {
+        final BufferedImage image = stub.takePixels();
+        if (image == null) {
+            return;
+        }
+        final int w = image.getWidth();
+        final int h = image.getHeight();
+        final int paddedWidth = w + PADDING;
+        final int size = paddedWidth * (h + PADDING);
+        if (pixels.length < size) {
+            pixels = new int[size];
+            pixelBuffer = BufferUtil.newIntBuffer(size);
+        }
+        image.getRGB(0, 0, w, h, pixels, 0, paddedWidth);
+        for (int row = 0; row < h; row++) {
+            Arrays.fill(pixels, row * paddedWidth + w, (row + 1) * paddedWidth, 0);
+        }
+        Arrays.fill(pixels, h * paddedWidth, size, 0);
+        pixelBuffer.clear();
+        pixelBuffer.put(pixels, 0, size);
+        pixelBuffer.flip();
+        gl.glTexSubImage2D(GL.GL_TEXTURE_2D, 0, stub.atlasX, stub.atlasY, paddedWidth, h + PADDING,
+                GL.GL_BGRA, GL.GL_UNSIGNED_INT_8_8_8_8_REV, pixelBuffer);
+    }
+
+    /**
+     * Doubles the length of the given array.
+     * @param array the array to grow
+     * @return a new array with the contents of the given one
+     */
+    private static int[] grow(final int[] array) {
+        final int[] retval = new int[array.length * 2];
+        System.arraycopy(array, 0, retval, 0, array.length);
+        return retval;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of the durations of some repeated piece of work, such as
+ * drawing a frame. Durations are counted in fixed buckets, exact to the
+ * microsecond below 16 microseconds and to within an eighth of an octave
+ * above, so recording takes no locks and allocates nothing. Durations are
+ * recorded by the graphics thread and may be read from any thread.
+ * @author Blinz Project
+ */
+public final class TimingHistogram {
+
+    /**
+     * Number of buckets below the first octave, one per microsecond.
+     */
+    private static final int LINEAR = 16;
+    /**
+     * Number of buckets each octave above LINEAR microseconds is split into.
+     */
+    private static final int SUB_BUCKETS = 8;
+    /**
+     * Enough buckets for durations up to about an hour.
+     */
+    static final int BUCKETS = LINEAR + SUB_BUCKETS * 28;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos the duration in nanoseconds
+     */
+    final void record(final long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        buckets.incrementAndGet(bucket(nanos / 1000));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of durations recorded since this TimingHistogram was
+     * created or last reset.
+     * @return the number of durations recorded
+     */
+    public final long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the duration that the given percentage of recorded durations did
+     * not exceed, accurate to the bucket it falls in.
+     * @param percent the percentile to get, from 0 to 100
+     * @return the duration in milliseconds, 0 if nothing has been recorded
+     */
+    public final double getPercentile(final double percent) {
+        final long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(n * Math.min(percent, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i) * 1000, max.get()) / 1000000.0;
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Gets the median recorded duration.
+     * @return the median duration in milliseconds
+     */
+    public final double getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Gets the 95th percentile of the recorded durations.
+     * @return the 95th percentile in milliseconds
+     */
+    public final double getP95() {
+        return getPercentile(95);
+    }
+
+    /**
+     * Gets the 99th percentile of the recorded durations.
+     * @return the 99th percentile in milliseconds
+     */
+    public final double getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * Gets the longest recorded duration.
+     * @return the longest duration in milliseconds
+     */
+    public final double getMax() {
+        return max.get() / 1000000.0;
+    }
+
+    /**
+     * Gets the mean of the recorded durations.
+     * @return the mean duration in milliseconds, 0 if nothing has been recorded
+     */
+    public final double getMean() {
+        final long n = count.get();
+        return n == 0 ? 0 : total.get() / 1000000.0 / n;
+    }
+
+    /**
+     * Discards all recorded durations. Durations recorded while resetting may
+     * be partly kept.
+     */
+    public final void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Gets the bucket a duration is counted in.
+     * @param micros the duration in microseconds
+     * @return the index of the bucket
+     */
+    static final int bucket(final long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        final int octave = 63 - Long.numberOfLeadingZeros(micros);
+        final int sub = (int) (micros >>> (octave - 3)) & (SUB_BUCKETS - 1);
+        return Math.min(LINEAR + (octave - 4) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    /**
+     * Gets the bound of a bucket, the shortest duration counted in the next
+     * one.
+     * @param bucket the index of the bucket
+     * @return the bound of the bucket in microseconds
+     */
+    static final long upperBound(final int bucket) {
+        if (bucket < LINEAR) {
+            return bucket + 1;
+        }
+        final int octave = 4 + (bucket - LINEAR) / SUB_BUCKETS;
+        final int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (octave - 3);
+    }
+}
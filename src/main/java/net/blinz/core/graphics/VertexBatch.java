@@ -0,0 +1,213 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import com.sun.opengl.util.BufferUtil;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+/**
+ * Super-class for batches of vertices that are streamed to OpenGL through a
+ * vertex buffer object and drawn with a single call. Falls back to client side
+ * vertex arrays where vertex buffer objects are not supported.
+ * @author Blinz Project
+ */
+abstract class VertexBatch {
+
+    /**
+     * Used for offsets of attributes a batch does not have.
+     */
+    static final int NONE = -1;
+    private final int capacity;
+    private final int stride;
+    private final int texCoordOffset;
+    private final int colorOffset;
+    /**
+     * Interleaved vertex data in the platform's native byte order.
+     */
+    final ByteBuffer vertices;
+    /**
+     * View of vertices starting at the first texture coordinate, used when
+     * drawing from client memory.
+     */
+    private final ByteBuffer texCoords;
+    /**
+     * View of vertices starting at the first color, used when drawing from
+     * client memory.
+     */
+    private final ByteBuffer colors;
+    private int mode = GL.GL_TRIANGLES;
+    private int count = 0;
+    private int vbo = 0;
+    /**
+     * The context in which the vertex buffer object was created.
+     */
+    private GLContext vboContext;
+
+    /**
+     * Constructor
+     * @param capacity the number of vertices that fit in the batch
+     * @param stride the size of a vertex in bytes
+     * @param texCoordOffset the offset of the texture coordinate in a vertex in bytes, or NONE
+     * @param colorOffset the offset of the RGBA color in a vertex in bytes, or NONE
+     */
+    VertexBatch(final int capacity, final int stride, final int texCoordOffset, final int colorOffset) {
+        this.capacity = capacity;
+        this.stride = stride;
+        this.texCoordOffset = texCoordOffset;
+        this.colorOffset = colorOffset;
+        vertices = BufferUtil.newByteBuffer(capacity * stride);
+        texCoords = view(texCoordOffset);
+        colors = view(colorOffset);
+    }
+
+    /**
+     * Converts a packed RGBA color to the int that, written to vertices, puts
+     * its bytes in red, green, blue, alpha order.
+     * @param rgba the color as kept by Color
+     * @return the color to write to vertices
+     */
+    final int vertexColor(final int rgba) {
+        return vertices.order() == ByteOrder.LITTLE_ENDIAN ? Integer.reverseBytes(rgba) : rgba;
+    }
+
+    /**
+     * Indicates whether or not there are vertices waiting to be drawn.
+     * @return true if there are vertices waiting to be drawn, false otherwise
+     */
+    final boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Makes room for the given number of vertices of the given primitive type,
+     * flushing the batch first if it holds a different primitive type or is
+     * too full.
+     * @param state the GL state to draw with should a flush be necessary
+     * @param mode the OpenGL primitive type of the vertices to be added
+     * @param vertexCount the number of vertices to be added, no more than the capacity
+     */
+    final void reserve(final GLState state, final int mode, final int vertexCount) {
+        if (mode != this.mode || count + vertexCount > capacity) {
+            flush(state);
+            this.mode = mode;
+        }
+        count += vertexCount;
+    }
+
+    /**
+     * Draws all vertices in the batch and empties it.
+     * @param state the GL state to draw with
+     */
+    final void flush(final GLState state) {
+        if (count == 0) {
+            return;
+        }
+        final GL gl = state.gl;
+        beginState(state);
+        vertices.flip();
+        state.enableClientState(GL.GL_VERTEX_ARRAY);
+        if (texCoords != null) {
+            state.enableClientState(GL.GL_TEXTURE_COORD_ARRAY);
+        } else {
+            state.disableClientState(GL.GL_TEXTURE_COORD_ARRAY);
+        }
+        if (colors != null) {
+            state.enableClientState(GL.GL_COLOR_ARRAY);
+        } else {
+            state.disableClientState(GL.GL_COLOR_ARRAY);
+        }
+        if (bindBuffer(state)) {
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, vertices.limit(), vertices, GL.GL_STREAM_DRAW);
+            gl.glVertexPointer(2, GL.GL_FLOAT, stride, 0);
+            if (texCoords != null) {
+                gl.glTexCoordPointer(2, GL.GL_FLOAT, stride, texCoordOffset);
+            }
+            if (colors != null) {
+                gl.glColorPointer(4, GL.GL_UNSIGNED_BYTE, stride, colorOffset);
+            }
+        } else {
+            gl.glVertexPointer(2, GL.GL_FLOAT, stride, vertices);
+            if (texCoords != null) {
+                gl.glTexCoordPointer(2, GL.GL_FLOAT, stride, texCoords);
+            }
+            if (colors != null) {
+                gl.glColorPointer(4, GL.GL_UNSIGNED_BYTE, stride, colors);
+            }
+        }
+        gl.glDrawArrays(mode, 0, count);
+        if (colors != null) {
+            state.forgetColor();
+        }
+
+        vertices.clear();
+        count = 0;
+    }
+
+    /**
+     * Sets up any OpenGL state needed to draw this batch.
+     * @param state the GL state to draw with
+     */
+    abstract void beginState(final GLState state);
+
+    /**
+     * Makes a view of vertices starting at the given offset.
+     * @param offset the offset of an attribute in a vertex in bytes, or NONE
+     * @return the view, or null if offset is NONE
+     */
+    private ByteBuffer view(final int offset) {
+        if (offset == NONE) {
+            return null;
+        }
+        vertices.position(offset);
+        final ByteBuffer retval = vertices.slice();
+        vertices.position(0);
+        return retval;
+    }
+
+    /**
+     * Binds this batch's vertex buffer object, creating it if necessary.
+     * @param state the GL state to draw with
+     * @return true if a vertex buffer object is bound, false if they are not supported
+     */
+    private boolean bindBuffer(final GLState state) {
+        final GLContext context = GLContext.getCurrent();
+        if (context != vboContext) {
+            final boolean shared = vbo != 0 && ContextGroups.shared(vboContext, context);
+            vboContext = context;
+            if (shared) {
+                //the buffer belongs to the new context too
+                state.bindArrayBuffer(vbo);
+                return true;
+            }
+            //a buffer made in an unrelated context goes with that context
+            vbo = 0;
+            if (state.gl.isFunctionAvailable("glGenBuffers")) {
+                final int[] name = new int[1];
+                state.gl.glGenBuffers(1, name, 0);
+                vbo = name[0];
+            }
+        }
+        if (vbo == 0) {
+            return false;
+        }
+        state.bindArrayBuffer(vbo);
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.awt.image.BufferedImage;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests recording frames into a CommandBuffer and replaying them, drawing
+ * through a SoftwareRenderer so that no OpenGL is needed.
+ * @author Blinz Project
+ */
+public class CommandBufferTest {
+
+    private static final int RED = 0xff0000;
+    private static final int GREEN = 0x00ff00;
+    private static final int BLUE = 0x0000ff;
+    private SoftwareRenderer renderer;
+    private QueuedCanvas canvas;
+
+    /**
+     * Puts a QueuedCanvas covering the whole frame on a SoftwareRenderer.
+     */
+    @Before
+    public void setUp() {
+        renderer = new SoftwareRenderer(64, 64);
+        canvas = new QueuedCanvas();
+        canvas.setBounds(0, 0, 64, 64);
+        renderer.addCanvas(canvas);
+    }
+
+    /**
+     * Polygon fills carry their triangulation, the commands recorded after
+     * one must still be read from the right place.
+     */
+    @Test
+    public void commandsAfterPolygon() {
+        final GraphicsRecorder recorder = canvas.getRecorder();
+        recorder.setColor(127, 0, 0);
+        recorder.fillPolygon(square(0, 0, 32, 64));
+        recorder.setColor(0, 0, 127);
+        recorder.fillRect(32, 0, 64, 64);
+        canvas.submit();
+        final BufferedImage frame = renderer.render();
+        assertColor(RED, frame, 10, 30);
+        assertColor(BLUE, frame, 50, 30);
+    }
+
+    /**
+     * A concave polygon and outlines replay alongside other commands.
+     */
+    @Test
+    public void concavePolygon() {
+        final Polygon polygon = new Polygon();
+        polygon.addPoint(0, 0);
+        polygon.addPoint(64, 0);
+        polygon.addPoint(64, 32);
+        polygon.addPoint(32, 32);
+        polygon.addPoint(32, 64);
+        polygon.addPoint(0, 64);
+        final GraphicsRecorder recorder = canvas.getRecorder();
+        recorder.setColor(0, 127, 0);
+        recorder.fillPolygon(polygon);
+        recorder.drawPolygon(polygon);
+        recorder.setColor(0, 0, 127);
+        recorder.fillRect(40, 40, 64, 64);
+        canvas.submit();
+        final BufferedImage frame = renderer.render();
+        assertColor(GREEN, frame, 10, 10);
+        assertColor(GREEN, frame, 50, 10);
+        assertColor(GREEN, frame, 10, 50);
+        assertColor(BLUE, frame, 50, 50);
+        assertColor(0, frame, 36, 36);
+    }
+
+    /**
+     * Points are copied when recorded, so changing the Polygon afterwards
+     * does not change the submitted frame.
+     */
+    @Test
+    public void polygonCopied() {
+        final Polygon polygon = square(0, 0, 32, 32);
+        final GraphicsRecorder recorder = canvas.getRecorder();
+        recorder.setColor(127, 0, 0);
+        recorder.fillPolygon(polygon);
+        canvas.submit();
+        polygon.setPoint(1, 64, 0);
+        polygon.setPoint(2, 64, 64);
+        final BufferedImage frame = renderer.render();
+        assertColor(RED, frame, 10, 10);
+        assertColor(0, frame, 50, 50);
+    }
+
+    /**
+     * The last submitted frame is drawn until a newer one is submitted, and
+     * recording the next frame does not show until then.
+     */
+    @Test
+    public void lastSubmittedFrame() {
+        final GraphicsRecorder recorder = canvas.getRecorder();
+        recorder.setColor(127, 0, 0);
+        recorder.fillRect(0, 0, 64, 64);
+        canvas.submit();
+        assertColor(RED, renderer.render(), 30, 30);
+
+        recorder.setColor(0, 127, 0);
+        recorder.fillRect(0, 0, 64, 64);
+        assertColor(RED, renderer.render(), 30, 30);
+        canvas.submit();
+        assertColor(GREEN, renderer.render(), 30, 30);
+        assertColor(GREEN, renderer.render(), 30, 30);
+    }
+
+    /**
+     * Makes a rectangular Polygon.
+     * @param x1 the x coordinate of the top left corner
+     * @param y1 the y coordinate of the top left corner
+     * @param x2 the x coordinate of the bottom right corner
+     * @param y2 the y coordinate of the bottom right corner
+     * @return the Polygon
+     */
+    private static Polygon square(final int x1, final int y1, final int x2, final int y2) {
+        final Polygon polygon = new Polygon();
+        polygon.addPoint(x1, y1);
+        polygon.addPoint(x2, y1);
+        polygon.addPoint(x2, y2);
+        polygon.addPoint(x1, y2);
+        return polygon;
+    }
+
+    /**
+     * Checks the color of a pixel of a frame.
+     * @param rgb the expected color as packed RGB
+     * @param frame the frame
+     * @param x the x coordinate of the pixel
+     * @param y the y coordinate of the pixel
+     */
+    private static void assertColor(final int rgb, final BufferedImage frame, final int x, final int y) {
+        assertEquals("pixel at " + x + ", " + y, Integer.toHexString(rgb),
+                Integer.toHexString(frame.getRGB(x, y) & 0xffffff));
+    }
+}
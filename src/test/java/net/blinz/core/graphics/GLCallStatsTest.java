@@ -0,0 +1,101 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the last frame, rolling and lifetime counts of GLCallStats.
+ * @author Blinz Project
+ */
+public class GLCallStatsTest {
+
+    /**
+     * The rolling totals cover only the last ROLLING_FRAMES frames while the
+     * lifetime totals cover all of them.
+     */
+    @Test
+    public void rollingWindow() {
+        final GLCallStats stats = new GLCallStats();
+        final long[] counts = new long[GLCallStats.COUNTERS];
+        final int frames = GLCallStats.ROLLING_FRAMES + 10;
+        for (int i = 1; i <= frames; i++) {
+            stats.mark(counts);
+            counts[GLCallStats.DRAW_CALLS] += i;
+            stats.record(counts);
+        }
+        assertEquals(frames, stats.getLastFrame(GLCallStats.DRAW_CALLS));
+        assertEquals((long) frames * (frames + 1) / 2, stats.getTotal(GLCallStats.DRAW_CALLS));
+        assertEquals(frames, stats.getFrames());
+        assertEquals(GLCallStats.ROLLING_FRAMES, stats.getRollingFrames());
+        //the window holds frames 11 to 70
+        long expected = 0;
+        for (int i = frames - GLCallStats.ROLLING_FRAMES + 1; i <= frames; i++) {
+            expected += i;
+        }
+        assertEquals(expected, stats.getRollingTotal(GLCallStats.DRAW_CALLS));
+        assertEquals((double) expected / GLCallStats.ROLLING_FRAMES,
+                stats.getRollingAverage(GLCallStats.DRAW_CALLS), 1e-9);
+        assertEquals(0, stats.getRollingTotal(GLCallStats.TEXTURE_BINDS));
+    }
+
+    /**
+     * Before the window fills, the rolling totals cover the frames so far.
+     */
+    @Test
+    public void partialWindow() {
+        final GLCallStats stats = new GLCallStats();
+        final long[] counts = new long[GLCallStats.COUNTERS];
+        for (int i = 0; i < 3; i++) {
+            stats.mark(counts);
+            counts[GLCallStats.TEXT_CYCLES] += 2;
+            stats.record(counts);
+        }
+        assertEquals(3, stats.getRollingFrames());
+        assertEquals(6, stats.getRollingTotal(GLCallStats.TEXT_CYCLES));
+        assertEquals(2, stats.getRollingAverage(GLCallStats.TEXT_CYCLES), 0);
+        assertEquals(2, stats.getAverage(GLCallStats.TEXT_CYCLES), 0);
+    }
+
+    /**
+     * Reset clears every count, and counting starts over cleanly.
+     */
+    @Test
+    public void reset() {
+        final GLCallStats stats = new GLCallStats();
+        final long[] counts = new long[GLCallStats.COUNTERS];
+        for (int i = 0; i < GLCallStats.ROLLING_FRAMES + 5; i++) {
+            stats.mark(counts);
+            counts[GLCallStats.BEGIN_END_PAIRS] += 4;
+            stats.record(counts);
+        }
+        stats.reset();
+        assertEquals(0, stats.getFrames());
+        assertEquals(0, stats.getRollingFrames());
+        assertEquals(0, stats.getLastFrame(GLCallStats.BEGIN_END_PAIRS));
+        assertEquals(0, stats.getTotal(GLCallStats.BEGIN_END_PAIRS));
+        assertEquals(0, stats.getRollingTotal(GLCallStats.BEGIN_END_PAIRS));
+        assertEquals(0, stats.getRollingAverage(GLCallStats.BEGIN_END_PAIRS), 0);
+
+        stats.mark(counts);
+        counts[GLCallStats.BEGIN_END_PAIRS] += 1;
+        stats.record(counts);
+        assertEquals(1, stats.getRollingTotal(GLCallStats.BEGIN_END_PAIRS));
+        assertEquals(1, stats.getRollingFrames());
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests ear clipping triangulation, which needs no OpenGL.
+ * @author Blinz Project
+ */
+public class PolygonMeshTest {
+
+    /**
+     * A convex polygon is split into n - 2 triangles covering its area.
+     */
+    @Test
+    public void convexSquare() {
+        check(0, 0, 10, 0, 10, 10, 0, 10);
+    }
+
+    /**
+     * Points wound clockwise are triangulated as well as counterclockwise ones.
+     */
+    @Test
+    public void clockwiseSquare() {
+        check(0, 0, 0, 10, 10, 10, 10, 0);
+    }
+
+    /**
+     * A concave polygon with a reflex corner keeps its notch empty.
+     */
+    @Test
+    public void concaveL() {
+        check(0, 0, 20, 0, 20, 10, 10, 10, 10, 20, 0, 20);
+    }
+
+    /**
+     * A polygon with several reflex corners, shaped like a comb.
+     */
+    @Test
+    public void concaveComb() {
+        check(0, 0, 50, 0, 50, 30, 40, 30, 40, 10, 30, 10, 30, 30, 20, 30, 20, 10, 10, 10, 10, 30, 0, 30);
+    }
+
+    /**
+     * Collinear points along the edges still give n - 2 triangles and the
+     * same area.
+     */
+    @Test
+    public void collinearPoints() {
+        check(0, 0, 5, 0, 10, 0, 10, 5, 10, 10, 5, 10, 0, 10, 0, 5);
+    }
+
+    /**
+     * A repeated point does not stop the triangulation.
+     */
+    @Test
+    public void duplicatePoint() {
+        check(0, 0, 10, 0, 10, 0, 10, 10, 0, 10);
+    }
+
+    /**
+     * Points that all lie on a line have no ears, the forced clip must still
+     * end with n - 2 triangles.
+     */
+    @Test
+    public void allCollinear() {
+        final int[] indices = triangulate(0, 0, 0, 10, 0, 20, 0, 30, 0, 40, 0);
+        assertEquals(9, indices.length);
+        assertValid(indices, 5);
+    }
+
+    /**
+     * A self-intersecting polygon is clipped anyway, with n - 2 triangles of
+     * valid indices.
+     */
+    @Test
+    public void selfIntersecting() {
+        final int[] bowtie = triangulate(0, 0, 10, 10, 10, 0, 0, 10);
+        assertEquals(6, bowtie.length);
+        assertValid(bowtie, 4);
+        final int[] pentagram = triangulate(50, 0, 20, 90, 95, 35, 5, 35, 80, 90);
+        assertEquals(9, pentagram.length);
+        assertValid(pentagram, 5);
+    }
+
+    /**
+     * Fewer than three points make no triangles.
+     */
+    @Test
+    public void degenerate() {
+        assertEquals(0, triangulate(0, 0).length);
+        assertEquals(0, triangulate(0, 0, 10, 0).length);
+        assertEquals(0, PolygonMesh.triangulatedLength(2));
+    }
+
+    /**
+     * The offset into the coordinate array is honoured, and indices are
+     * relative to the first point.
+     */
+    @Test
+    public void offset() {
+        final int[] coords = {99, 99, 99, 0, 0, 20, 0, 20, 10, 10, 10, 10, 20, 0, 20};
+        final int[] indices = new int[PolygonMesh.triangulatedLength(6)];
+        final int count = PolygonMesh.triangulate(coords, 3, 6, indices, new int[6]);
+        assertEquals(12, count);
+        assertValid(indices, 6);
+        assertEquals(area(coords, 3, 6), triangleArea(coords, 3, indices));
+    }
+
+    /**
+     * A Polygon caches its triangulation and triangulates again once a point
+     * moves.
+     */
+    @Test
+    public void polygonTriangles() {
+        final Polygon polygon = new Polygon();
+        polygon.addPoint(0, 0);
+        polygon.addPoint(20, 0);
+        polygon.addPoint(20, 20);
+        polygon.addPoint(0, 20);
+        final int[] indices = new int[PolygonMesh.triangulatedLength(4)];
+        assertEquals(6, polygon.getTriangles(indices, 0));
+        final int[] coords = new int[8];
+        polygon.getPoints(coords, 0);
+        assertEquals(area(coords, 0, 4), triangleArea(coords, 0, indices));
+
+        //push a corner inside to make the polygon concave
+        polygon.setPoint(2, 5, 5);
+        assertEquals(6, polygon.getTriangles(indices, 0));
+        polygon.getPoints(coords, 0);
+        assertEquals(area(coords, 0, 4), triangleArea(coords, 0, indices));
+    }
+
+    /**
+     * Triangulates the given simple polygon and checks the number of
+     * triangles, their indices and their total area.
+     * @param coords x, y pairs of the points of the polygon
+     */
+    private static void check(final int... coords) {
+        final int points = coords.length / 2;
+        final int[] indices = triangulate(coords);
+        assertEquals("triangles", (points - 2) * 3, indices.length);
+        assertValid(indices, points);
+        assertEquals("area", area(coords, 0, points), triangleArea(coords, 0, indices));
+    }
+
+    /**
+     * Triangulates the polygon held in the given coordinates.
+     * @param coords x, y pairs of the points of the polygon
+     * @return the indices written
+     */
+    private static int[] triangulate(final int... coords) {
+        final int points = coords.length / 2;
+        final int[] indices = new int[PolygonMesh.triangulatedLength(points)];
+        final int count = PolygonMesh.triangulate(coords, 0, points, indices, new int[points]);
+        final int[] retval = new int[count];
+        System.arraycopy(indices, 0, retval, 0, count);
+        return retval;
+    }
+
+    /**
+     * Checks that every index is that of a point, and that no triangle uses a
+     * point twice.
+     * @param indices the indices of the triangles
+     * @param points the number of points
+     */
+    private static void assertValid(final int[] indices, final int points) {
+        for (int i = 0; i < indices.length; i += 3) {
+            for (int j = 0; j < 3; j++) {
+                assertTrue("index in range", indices[i + j] >= 0 && indices[i + j] < points);
+            }
+            assertTrue("distinct corners", indices[i] != indices[i + 1]
+                    && indices[i + 1] != indices[i + 2] && indices[i] != indices[i + 2]);
+        }
+    }
+
+    /**
+     * Gets twice the area of a polygon.
+     * @param coords x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param points the number of points
+     * @return twice the unsigned area of the polygon
+     */
+    private static long area(final int[] coords, final int offset, final int points) {
+        long area = 0;
+        for (int i = 0; i < points; i++) {
+            final int a = offset + i * 2;
+            final int b = offset + ((i + 1) % points) * 2;
+            area += (long) coords[a] * coords[b + 1] - (long) coords[b] * coords[a + 1];
+        }
+        return Math.abs(area);
+    }
+
+    /**
+     * Gets twice the total area of the given triangles.
+     * @param coords x, y pairs of the points of the polygon
+     * @param offset index of the x coordinate of the first point
+     * @param indices the indices of the triangles
+     * @return twice the summed unsigned area of the triangles
+     */
+    private static long triangleArea(final int[] coords, final int offset, final int[] indices) {
+        long total = 0;
+        final int[] triangle = new int[6];
+        for (int i = 0; i + 2 < indices.length; i += 3) {
+            for (int j = 0; j < 3; j++) {
+                triangle[j * 2] = coords[offset + indices[i + j] * 2];
+                triangle[j * 2 + 1] = coords[offset + indices[i + j] * 2 + 1];
+            }
+            total += area(triangle, 0, 3);
+        }
+        return total;
+    }
+}
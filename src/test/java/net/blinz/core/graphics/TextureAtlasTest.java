@@ -0,0 +1,162 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the shelf packing of atlas pages and the reclaiming of freed space,
+ * which need no OpenGL until a page is uploaded.
+ * @author Blinz Project
+ */
+public class TextureAtlasTest {
+
+    /**
+     * Images are placed left to right along a shelf, each followed by the
+     * padding.
+     */
+    @Test
+    public void packsAlongShelf() throws IOException {
+        final TextureAtlas atlas = new TextureAtlas(64, 64);
+        final ImageStub a = stub(15, 15), b = stub(15, 15), c = stub(15, 15);
+        assertTrue(atlas.add(a));
+        assertTrue(atlas.add(b));
+        assertTrue(atlas.add(c));
+        assertPlaced(a, 0, 0);
+        assertPlaced(b, 16, 0);
+        assertPlaced(c, 32, 0);
+        assertEquals(0.25, b.left, 0);
+        assertEquals(31 / 64.0, b.right, 0);
+    }
+
+    /**
+     * Removing the last image on a shelf frees its space for the next image.
+     */
+    @Test
+    public void reclaimsShelfEnd() throws IOException {
+        final TextureAtlas atlas = new TextureAtlas(64, 64);
+        final ImageStub a = stub(15, 15), b = stub(15, 15), c = stub(15, 15);
+        atlas.add(a);
+        atlas.add(b);
+        atlas.add(c);
+        atlas.remove(c);
+        final ImageStub d = stub(15, 15);
+        atlas.add(d);
+        assertPlaced(d, 32, 0);
+    }
+
+    /**
+     * Space between images still on a shelf is not reused, but is reclaimed
+     * once the images to its right are gone.
+     */
+    @Test
+    public void reclaimsBackToLastImage() throws IOException {
+        final TextureAtlas atlas = new TextureAtlas(64, 64);
+        final ImageStub a = stub(15, 15), b = stub(15, 15), c = stub(15, 15);
+        atlas.add(a);
+        atlas.add(b);
+        atlas.add(c);
+        atlas.remove(b);
+        final ImageStub d = stub(15, 15);
+        atlas.add(d);
+        assertPlaced(d, 48, 0);
+        //the shelf is full, so the next image opens a new one
+        final ImageStub e = stub(15, 15);
+        atlas.add(e);
+        assertPlaced(e, 0, 16);
+
+        atlas.remove(d);
+        atlas.remove(c);
+        final ImageStub f = stub(15, 15);
+        atlas.add(f);
+        assertPlaced(f, 16, 0);
+    }
+
+    /**
+     * Images go on the shortest shelf they fit on.
+     */
+    @Test
+    public void bestFitShelf() throws IOException {
+        final TextureAtlas atlas = new TextureAtlas(64, 64);
+        final ImageStub wide = stub(15, 15), tall = stub(15, 31), small = stub(7, 7);
+        atlas.add(wide);
+        atlas.add(tall);
+        assertPlaced(tall, 0, 16);
+        atlas.add(small);
+        assertPlaced(small, 16, 0);
+    }
+
+    /**
+     * Emptying a page closes its shelves, so an image taller than any of them
+     * fits again.
+     */
+    @Test
+    public void emptyPageClosesShelves() throws IOException {
+        final TextureAtlas atlas = new TextureAtlas(32, 32);
+        final ImageStub a = stub(15, 15), b = stub(15, 15);
+        atlas.add(a);
+        atlas.add(b);
+        assertFalse(atlas.add(stub(31, 31)));
+        atlas.remove(a);
+        atlas.remove(b);
+        assertTrue(atlas.isEmpty());
+        final ImageStub big = stub(31, 31);
+        assertTrue(atlas.add(big));
+        assertPlaced(big, 0, 0);
+    }
+
+    /**
+     * Images that do not fit are refused.
+     */
+    @Test
+    public void refusesWhenFull() throws IOException {
+        final TextureAtlas atlas = new TextureAtlas(32, 32);
+        assertFalse(atlas.add(stub(32, 8)));
+        assertTrue(atlas.add(stub(31, 31)));
+        assertFalse(atlas.add(stub(1, 1)));
+    }
+
+    /**
+     * Checks where an image was placed on its page.
+     * @param stub the ImageStub placed
+     * @param x the expected x coordinate
+     * @param y the expected y coordinate
+     */
+    private static void assertPlaced(final ImageStub stub, final int x, final int y) {
+        assertEquals("x", x, stub.atlasX);
+        assertEquals("y", y, stub.atlasY);
+    }
+
+    /**
+     * Makes an ImageStub of the given size from a temporary file.
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the ImageStub
+     * @throws IOException if the file cannot be written
+     */
+    private static ImageStub stub(final int width, final int height) throws IOException {
+        final File file = File.createTempFile("atlas", ".png");
+        file.deleteOnExit();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+        return new ImageStub(file.getPath(), ImageStub.SourceType.LOCAL);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  BlinzCore - core library of audio, video, and other essential classes.
+ *  Copyright (C) 2010  BlinzProject <gtalent2@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License version 2 as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.blinz.core.graphics;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the bucketing of durations and the percentiles read back from it.
+ * @author Blinz Project
+ */
+public class TimingHistogramTest {
+
+    /**
+     * Each bucket's bound is the first duration of the next bucket, so
+     * bucketing and bounds round-trip.
+     */
+    @Test
+    public void bucketBoundsRoundTrip() {
+        for (int i = 0; i < TimingHistogram.BUCKETS - 1; i++) {
+            final long bound = TimingHistogram.upperBound(i);
+            assertEquals("last duration of bucket " + i, i, TimingHistogram.bucket(bound - 1));
+            assertEquals("first duration of bucket " + (i + 1), i + 1, TimingHistogram.bucket(bound));
+        }
+    }
+
+    /**
+     * Buckets are a microsecond wide below 16 microseconds and an eighth of
+     * an octave wide above.
+     */
+    @Test
+    public void bucketWidths() {
+        for (long micros = 0; micros < 16; micros++) {
+            assertEquals(micros, TimingHistogram.bucket(micros));
+        }
+        for (int i = 16; i < TimingHistogram.BUCKETS - 1; i++) {
+            final long low = TimingHistogram.upperBound(i - 1);
+            final long high = TimingHistogram.upperBound(i);
+            assertTrue("bucket " + i + " within an eighth", (high - low) * 8 <= low);
+        }
+    }
+
+    /**
+     * Durations beyond the last bucket are counted in it.
+     */
+    @Test
+    public void clampsToLastBucket() {
+        assertEquals(TimingHistogram.BUCKETS - 1, TimingHistogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    /**
+     * Percentiles are accurate to their bucket and never exceed the maximum.
+     */
+    @Test
+    public void percentiles() {
+        final TimingHistogram histogram = new TimingHistogram();
+        assertEquals(0, histogram.getP50(), 0);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 100000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(10, histogram.getMax(), 0);
+        assertEquals(5.05, histogram.getMean(), 1e-9);
+        assertEquals(5, histogram.getP50(), 5 / 8.0);
+        assertEquals(9.5, histogram.getP95(), 9.5 / 8);
+        assertTrue(histogram.getPercentile(100) <= histogram.getMax());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax(), 0);
+    }
+}